@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.serializers.EventTypeRegistry;
+import io.igx.eventstore.serializers.json.JacksonSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Vinicius Carvalho
+ * Reads the PAYLOAD of a commit, a list of event messages, with the single pass EventMessageJacksonDeSerializer and with
+ * the tree based deserializer it replaced, kept here as {@link TreeEventMessageDeSerializer}. Type names are written
+ * either as class names or as registered aliases.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventMessageDeserializationBenchmark {
+
+	@Param({"1", "20"})
+	public int eventsPerCommit;
+
+	@Param({"className", "alias"})
+	public String typeNames;
+
+	private JacksonSerializer<Object> singlePass;
+	private ObjectMapper treeBased;
+	private byte[] payload;
+	private byte[] classNamePayload;
+
+	@Setup
+	public void setup() {
+		EventTypeRegistry registry = new EventTypeRegistry();
+		if("alias".equals(typeNames)){
+			registry.register("Deposited", Deposited.class);
+		}
+		singlePass = new JacksonSerializer<>(registry);
+		treeBased = new ObjectMapper();
+		SimpleModule module = new SimpleModule();
+		module.addDeserializer(EventMessage.class, new TreeEventMessageDeSerializer(treeBased));
+		treeBased.registerModule(module);
+
+		List<EventMessage> events = new ArrayList<>(eventsPerCommit);
+		for (int i = 0; i < eventsPerCommit; i++) {
+			events.add(new EventMessage(Collections.singletonMap("User", "user-" + i), new Deposited("account-" + i, 100.0 + i, "EUR")));
+		}
+		payload = singlePass.serialize(events);
+		classNamePayload = new JacksonSerializer<>(new EventTypeRegistry()).serialize(events);
+	}
+
+	@Benchmark
+	public List<Object> singlePass() {
+		return singlePass.deserializeCollection(payload, (Class) EventMessage.class);
+	}
+
+	/**
+	 * The tree based deserializer only understands class names, so it always reads the payload written without aliases.
+	 */
+	@Benchmark
+	public List<EventMessage> treeBased() throws IOException {
+		return treeBased.readValue(classNamePayload, treeBased.getTypeFactory().constructCollectionType(ArrayList.class, EventMessage.class));
+	}
+
+	public static class Deposited {
+
+		private final String accountId;
+		private final double amount;
+		private final String currency;
+
+		@JsonCreator
+		public Deposited(@JsonProperty("accountId") String accountId, @JsonProperty("amount") double amount, @JsonProperty("currency") String currency) {
+			this.accountId = accountId;
+			this.amount = amount;
+			this.currency = currency;
+		}
+
+		public String getAccountId() {
+			return accountId;
+		}
+
+		public double getAmount() {
+			return amount;
+		}
+
+		public String getCurrency() {
+			return currency;
+		}
+	}
+
+	/**
+	 * The deserializer as it was before reading in a single pass: builds a tree per event, converts headers and body
+	 * from it and loads the body class by name for every event.
+	 */
+	public static class TreeEventMessageDeSerializer extends JsonDeserializer<EventMessage> {
+
+		private final ObjectMapper mapper;
+
+		public TreeEventMessageDeSerializer(ObjectMapper mapper) {
+			this.mapper = mapper;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public EventMessage deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+			JsonNode node = jsonParser.readValueAsTree();
+			Map headers = mapper.treeToValue(node.get("headers"), Map.class);
+			try {
+				Class clazz = Class.forName(node.get("@type").asText());
+				Object payload = mapper.treeToValue(node.get("body"), clazz);
+				return new EventMessage(headers, payload);
+			}
+			catch (ClassNotFoundException e) {
+				throw new RuntimeJsonMappingException(e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.StreamHeadCache;
+import io.igx.eventstore.persistence.BaseCommit;
+import io.igx.eventstore.persistence.StreamHead;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Vinicius Carvalho
+ * What each committing thread does to the {@link StreamHeadCache}: read the head of a stream, then track its new
+ * commit, at 1, 8 and 64 threads. A concurrency of 1 is a single lock over one LRU, as the heads were kept before the
+ * cache was striped. The streams outnumber the capacity, so evictions are part of the measure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamHeadCacheBenchmark {
+
+	@Param({"1", "16", "64"})
+	public int concurrency;
+
+	@Param({"1024"})
+	public int capacity;
+
+	@Param({"4096"})
+	public int streams;
+
+	private StreamHeadCache cache;
+	private Commit[] commits;
+
+	@Setup
+	public void setup() {
+		cache = new StreamHeadCache(capacity, concurrency);
+		commits = new Commit[streams];
+		for (int i = 0; i < streams; i++) {
+			commits[i] = new BaseCommit("stream-" + i, "Account", 1L, UUID.randomUUID(), 1L, 0L, String.valueOf(i), null, null);
+		}
+	}
+
+	private StreamHead commit() {
+		Commit commit = commits[ThreadLocalRandom.current().nextInt(streams)];
+		StreamHead head = cache.get(commit.getBucketId(), commit.getStreamId());
+		cache.update(commit);
+		return head;
+	}
+
+	@Benchmark
+	@Threads(1)
+	public StreamHead threads1() {
+		return commit();
+	}
+
+	@Benchmark
+	@Threads(8)
+	public StreamHead threads8() {
+		return commit();
+	}
+
+	@Benchmark
+	@Threads(64)
+	public StreamHead threads64() {
+		return commit();
+	}
+}
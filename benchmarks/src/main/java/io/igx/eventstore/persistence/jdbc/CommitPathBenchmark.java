@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.CommitAttempt;
+import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.EventStream;
+import io.igx.eventstore.OptmisticEventStore;
+import io.igx.eventstore.OptmisticPipelineHook;
+import io.igx.eventstore.persistence.jdbc.properties.JDBCPersistenceProperties;
+import io.igx.eventstore.persistence.jdbc.properties.SQLCommands;
+import io.igx.eventstore.serializers.EventTypeRegistry;
+import io.igx.eventstore.serializers.Serializer;
+import io.igx.eventstore.serializers.compression.CompressingSerializer;
+import io.igx.eventstore.serializers.json.JacksonSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * @author Vinicius Carvalho
+ * Commits two events and one header through a stream, the store and its hooks down to {@link JDBCPersistentStream},
+ * which serializes the headers and the payload as persistCommit does. The JDBC statements are left out, the garbage
+ * of the driver is not ours to guard. It lives in the package of the JDBC store to reach its commit builder.
+ * Run through {@link #main(String[])} it is an allocation gate: the GC profiler measures the bytes allocated per
+ * commit and the run fails if they exceed {@link #MAX_BYTES_PER_COMMIT}.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar io.igx.eventstore.persistence.jdbc.CommitPathBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommitPathBenchmark {
+
+	/**
+	 * About 2.5 KiB per commit at the time of writing.
+	 */
+	static final double MAX_BYTES_PER_COMMIT = 3072;
+
+	/**
+	 * More than the recent commits the store remembers per stream, so cycling through them never looks like a retry.
+	 */
+	private static final int GUIDS = 1024;
+
+	private final UUID[] guids = new UUID[GUIDS];
+	private int next;
+	private Blackhole blackhole;
+	private EventStream stream;
+	private EventMessage opened;
+	private EventMessage deposited;
+
+	@Setup
+	public void setup(Blackhole blackhole) {
+		this.blackhole = blackhole;
+		JDBCPersistenceProperties properties = new JDBCPersistenceProperties();
+		Serializer<Object> json = new CompressingSerializer<>(new JacksonSerializer<>(new EventTypeRegistry()),
+				properties.getCompression().getAlgorithm(), properties.getCompression().getThreshold());
+		PayloadFormats payloadFormats = PayloadFormats.json(json);
+		JDBCPersistentStream persistence = new JDBCPersistentStream(new JdbcTemplate(), new TransactionTemplate(), new SQLCommands(), properties, payloadFormats, null) {
+			@Override
+			public Commit commit(CommitAttempt attempt) {
+				Serializer writer = payloadFormats.writerFor(attempt.getBucketId());
+				CommitPathBenchmark.this.blackhole.consume(writer.serialize(attempt.getHeaders()));
+				CommitPathBenchmark.this.blackhole.consume(writer.serialize(attempt.getEvents()));
+				return toCommit(attempt, attempt.getCommitSequence());
+			}
+		};
+		OptmisticEventStore store = new OptmisticEventStore(persistence, Collections.singletonList(new OptmisticPipelineHook()));
+		stream = store.create("Account", "1");
+		opened = new EventMessage(new Deposited("account-1", 1000.0, "EUR"));
+		deposited = new EventMessage(new Deposited("account-1", 100.0, "EUR"));
+		for (int i = 0; i < GUIDS; i++) {
+			guids[i] = UUID.randomUUID();
+		}
+	}
+
+	@Benchmark
+	public Long commit() {
+		stream.add(opened);
+		stream.add(deposited);
+		stream.getUncommitedHeaders().put("Serializer", "JsonSerializer");
+		stream.commitChanges(guids[next]);
+		next = (next + 1) % GUIDS;
+		return stream.getCommitSequence();
+	}
+
+	/**
+	 * Runs the benchmark under the GC profiler, failing if a commit allocates more than {@link #MAX_BYTES_PER_COMMIT}.
+	 * JMH options given on the command line apply to the run.
+	 */
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(CommitPathBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		Collection<RunResult> results = new Runner(options).run();
+		for (RunResult result : results) {
+			double perCommit = allocatedPerOperation(result);
+			if(perCommit > MAX_BYTES_PER_COMMIT){
+				throw new IllegalStateException("Commit path allocates " + perCommit + " bytes per commit, the limit is " + MAX_BYTES_PER_COMMIT);
+			}
+			System.out.println("Commit path allocates " + perCommit + " bytes per commit, the limit is " + MAX_BYTES_PER_COMMIT);
+		}
+	}
+
+	private static double allocatedPerOperation(RunResult result) {
+		for (Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet()) {
+			// the label carries a leading marker that changed across JMH versions
+			if(secondary.getKey().endsWith("gc.alloc.rate.norm")){
+				return secondary.getValue().getScore();
+			}
+		}
+		throw new IllegalStateException("The GC profiler reported no allocation rate, is allocation accounting supported by this JVM?");
+	}
+
+	public static class Deposited {
+
+		private final String accountId;
+		private final double amount;
+		private final String currency;
+
+		@JsonCreator
+		public Deposited(@JsonProperty("accountId") String accountId, @JsonProperty("amount") double amount, @JsonProperty("currency") String currency) {
+			this.accountId = accountId;
+			this.amount = amount;
+			this.currency = currency;
+		}
+
+		public String getAccountId() {
+			return accountId;
+		}
+
+		public double getAmount() {
+			return amount;
+		}
+
+		public String getCurrency() {
+			return currency;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore;
+
+/**
+ * @author Vinicius Carvalho
+ * A pipeline hook whose {@link #postCommit(Commit)} is too slow to run on the committing thread, like auditing,
+ * cache warming or notifications. {@link OptmisticEventStore} hands its commits to a bounded buffer drained by a
+ * dedicated thread, in commit order, see {@link HookDispatcher}. Every other method is still invoked synchronously.
+ */
+public interface AsynchronousPipelineHook extends PipelineHook {
+
+	/**
+	 * What to do with a commit when the buffer of the hook is full.
+	 */
+	enum OverflowPolicy {
+		/**
+		 * The committing thread waits for room, slowing writers down to the pace of the hook.
+		 */
+		BLOCK,
+		/**
+		 * The commit is not delivered to the hook.
+		 */
+		DROP,
+		/**
+		 * The commit goes to an unbounded overflow queue, delivered in order once the buffer is drained.
+		 */
+		SPILL
+	}
+
+	/**
+	 *
+	 * @return the number of commits buffered before the overflow policy applies
+	 */
+	default int getBufferSize() {
+		return 1024;
+	}
+
+	default OverflowPolicy getOverflowPolicy() {
+		return OverflowPolicy.BLOCK;
+	}
+}
@@ -59,6 +59,7 @@ public class CommitAttempt{
 	 * @param commitStamp The point in time at which the commit was persisted.
 	 * @param headers The metadata which provides additional, unstructured information about this commit.
 	 * @param events The collection of event messages to be committed as a single unit.
+	 * Headers and events are wrapped once, read-only, and handed out as such, the attempt does not copy them.
 	 */
 	public CommitAttempt(String bucketId, String streamId, Long streamRevision, UUID guid, Long commitSequence, Long commitStamp, Map<String, Object> headers, Collection<EventMessage> events) {
 		this.streamId = streamId;
@@ -67,8 +68,8 @@ public class CommitAttempt{
 		this.guid = guid;
 		this.commitSequence = commitSequence;
 		this.commitStamp = commitStamp;
-		this.headers = headers;
-		this.events = events;
+		this.headers = (headers == null) ? Collections.emptyMap() : Collections.unmodifiableMap(headers);
+		this.events = (events == null) ? Collections.emptyList() : Collections.unmodifiableCollection(events);
 	}
 
 	public String getBucketId() {
@@ -96,11 +97,11 @@ public class CommitAttempt{
 	}
 
 	public Map<String, Object> getHeaders() {
-		return Collections.unmodifiableMap(headers);
+		return headers;
 	}
 
 	public Collection<EventMessage> getEvents() {
-		return Collections.unmodifiableCollection(events);
+		return events;
 	}
 
 }
@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * @author Vinicius Carvalho
+ * Factory for the executors running asynchronous commits. Commits spend most of their time waiting on storage, so the
+ * pools are bounded both in threads and in queued commits; when the queue is full the commit is rejected, so the
+ * producer gets a failed future to back off on instead of running the commit on its own thread.
+ */
+public final class CommitExecutors {
+
+	private static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors() * 4;
+	private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	private CommitExecutors() {
+	}
+
+	/**
+	 * Creates a new bounded commit executor. The caller owns it and is responsible for shutting it down.
+	 * @param threads The maximum number of commits running concurrently.
+	 * @param queueCapacity The maximum number of commits waiting for a thread.
+	 * @return a new executor
+	 */
+	public static ExecutorService newBoundedExecutor(int threads, int queueCapacity) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				new CommitThreadFactory(),
+				new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Runs the supplier on the executor.
+	 * @return a future completed with the result of the supplier, or exceptionally with a
+	 * {@link RejectedExecutionException} if the executor is saturated or shut down
+	 */
+	public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+		try {
+			return CompletableFuture.supplyAsync(supplier, executor);
+		}
+		catch (RejectedExecutionException e) {
+			CompletableFuture<T> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(e);
+			return rejected;
+		}
+	}
+
+	/**
+	 * @return the executor shared by every store and stream that has not been given one explicitly.
+	 */
+	public static ExecutorService defaultExecutor() {
+		return DefaultExecutorHolder.INSTANCE;
+	}
+
+	private static class DefaultExecutorHolder {
+		static final ExecutorService INSTANCE = newBoundedExecutor(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	private static class CommitThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger POOL = new AtomicInteger();
+		private final AtomicInteger threads = new AtomicInteger();
+		private final int pool = POOL.incrementAndGet();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "eventstore-commit-" + pool + "-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * @author Vinicius Carvalho
+ * Single-writer lanes for commits. Every (bucketId, streamId) pair is hashed onto one of N lanes, each one a single
+ * thread, so work on the same stream runs one at a time and in submission order while different streams proceed in
+ * parallel. Running the whole read, decide and commit cycle of a stream in its lane (see
+ * {@link OptmisticEventStore#execute(String, String, java.util.function.Function)}) removes optimistic conflicts
+ * between threads of this process. When a lane is full, submitters block until it has room again. A task running in a
+ * lane can always submit to its own lane, behind the tasks already queued, as it cannot wait for room in itself.
+ */
+public class CommitLanes implements AutoCloseable {
+
+	private static final int DEFAULT_LANE_CAPACITY = 1024;
+
+	private final Lane[] lanes;
+
+	public CommitLanes(int laneCount) {
+		this(laneCount, DEFAULT_LANE_CAPACITY);
+	}
+
+	/**
+	 * @param laneCount The number of lanes, each one owning a thread.
+	 * @param laneCapacity The maximum number of tasks waiting in each lane.
+	 */
+	public CommitLanes(int laneCount, int laneCapacity) {
+		if(laneCount < 1 || laneCapacity < 1)
+			throw new IllegalArgumentException("Lane count and capacity must be positive");
+		this.lanes = new Lane[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			lanes[i] = new Lane(i, laneCapacity);
+		}
+	}
+
+	/**
+	 * @return the single threaded executor owning the stream
+	 */
+	public Executor laneFor(String bucketId, String streamId) {
+		return lanes[indexOf(bucketId, streamId)];
+	}
+
+	/**
+	 * Runs the task in the lane owning the stream.
+	 */
+	public <T> CompletableFuture<T> submit(String bucketId, String streamId, Supplier<T> task) {
+		return CompletableFuture.supplyAsync(task, laneFor(bucketId, streamId));
+	}
+
+	public int getLaneCount() {
+		return lanes.length;
+	}
+
+	/**
+	 * @return the number of tasks queued or running in a lane
+	 */
+	public int getDepth(int lane) {
+		ThreadPoolExecutor executor = lanes[lane].executor;
+		return executor.getQueue().size() + executor.getActiveCount();
+	}
+
+	/**
+	 * @return the depth of the busiest lane, a steadily high value points at a hot stream
+	 */
+	public int getMaxDepth() {
+		int max = 0;
+		for (int i = 0; i < lanes.length; i++) {
+			max = Math.max(max, getDepth(i));
+		}
+		return max;
+	}
+
+	/**
+	 * @return the number of tasks queued or running in all lanes
+	 */
+	public int getTotalDepth() {
+		int total = 0;
+		for (int i = 0; i < lanes.length; i++) {
+			total += getDepth(i);
+		}
+		return total;
+	}
+
+	/**
+	 * @return the number of tasks completed by a lane since it started
+	 */
+	public long getCompleted(int lane) {
+		return lanes[lane].executor.getCompletedTaskCount();
+	}
+
+	/**
+	 * Stops accepting tasks and waits for the queued ones to finish.
+	 */
+	@Override
+	public void close() {
+		for (Lane lane : lanes) {
+			lane.executor.shutdown();
+		}
+		try {
+			for (Lane lane : lanes) {
+				lane.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	int indexOf(String bucketId, String streamId) {
+		int hash = 31 * ((bucketId != null) ? bucketId.hashCode() : 0) + ((streamId != null) ? streamId.hashCode() : 0);
+		hash ^= (hash >>> 16);
+		return (hash & Integer.MAX_VALUE) % lanes.length;
+	}
+
+	/**
+	 * One single threaded executor over an unbounded queue. Its capacity is enforced with permits taken by submitters
+	 * from other threads, and given back when the task leaves the queue, which applies back pressure without ever
+	 * running a task outside its lane or out of order.
+	 */
+	private static final class Lane implements Executor {
+
+		private final Semaphore room;
+		private final ThreadPoolExecutor executor;
+
+		Lane(int index, int capacity) {
+			this.room = new Semaphore(capacity);
+			this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<>(),
+					r -> new LaneThread(r, this, index),
+					(r, executor) -> {
+						throw new RejectedExecutionException("Commit lanes have been closed");
+					});
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			Thread current = Thread.currentThread();
+			if(current instanceof LaneThread && ((LaneThread) current).lane == this){
+				executor.execute(task);
+				return;
+			}
+			if(executor.isShutdown())
+				throw new RejectedExecutionException("Commit lanes have been closed");
+			try {
+				room.acquire();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting for room in a commit lane", e);
+			}
+			try {
+				executor.execute(() -> {
+					room.release();
+					task.run();
+				});
+			}
+			catch (RejectedExecutionException e) {
+				room.release();
+				throw e;
+			}
+		}
+	}
+
+	private static class LaneThread extends Thread {
+
+		private final Lane lane;
+
+		LaneThread(Runnable target, Lane lane, int index) {
+			super(target, "eventstore-lane-" + index);
+			this.lane = lane;
+			setDaemon(true);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore;
+
+import java.util.List;
+
+/**
+ * @author Vinicius Carvalho
+ * Decides whether uncommitted events still make sense once other commits made it to the stream first, see
+ * {@link EventStream#commitChanges(java.util.UUID, ConflictResolver, RetryPolicy)}.
+ */
+@FunctionalInterface
+public interface ConflictResolver {
+
+	/**
+	 * Never retries, every conflict is reported to the caller.
+	 */
+	ConflictResolver NEVER = (uncommitted, committed) -> false;
+
+	/**
+	 * Always retries, for streams whose events do not depend on each other (e.g. appends of measurements).
+	 */
+	ConflictResolver ALWAYS = (uncommitted, committed) -> true;
+
+	/**
+	 * @param uncommitted The events about to be committed.
+	 * @param committed The events committed by others since the stream was read.
+	 * @return true if the uncommitted events can be committed after the others, false if they conflict.
+	 */
+	boolean canApply(List<EventMessage> uncommitted, List<EventMessage> committed);
+}
@@ -24,6 +24,13 @@
 
 package io.igx.eventstore;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import io.igx.eventstore.exceptions.ConcurrencyException;
+import io.igx.eventstore.exceptions.DuplicateCommitException;
 import io.igx.eventstore.exceptions.StreamNotFoundException;
 import io.igx.eventstore.persistence.PersistentStream;
 import io.igx.eventstore.persistence.StorageUnavailableException;
@@ -36,6 +43,11 @@ import io.igx.eventstore.persistence.StorageException;
  */
 public interface EventStore {
 
+	/**
+	 * Expected revision accepting whatever revision the stream is at, see {@link #append(String, String, long, Collection, Map)}.
+	 */
+	long ANY_REVISION = -1L;
+
 	/**
 	 * Returns the underling PersistentStreams implementation for this EventStore. Renamed to resemble EntityManager naming
 	 * @return the PersistentStream implementation
@@ -43,7 +55,8 @@ public interface EventStore {
 	PersistentStream getDelegate();
 
 	/**
-	 * Creates a new Stream
+	 * Creates a new Stream at revision 0 without reading the storage. If the stream already exists its first commit
+	 * fails with a {@link io.igx.eventstore.exceptions.ConcurrencyException}, after which the stream is refreshed to the stored head.
 	 * @param bucketId The value which uniquely identifies bucket the stream belongs to.
 	 * @param streamId The value which uniquely identifies the stream within the bucket to be created.
 	 * @return an empty Stream
@@ -76,6 +89,46 @@ public interface EventStore {
 	 */
 	EventStream open(Snapshot snapshot, Long maxRevision);
 
+	/**
+	 * Appends the events to the stream without opening it, for writers that already know the revision they expect
+	 * the stream to be at. The head of the stream is read, checked and moved in the same transaction that persists
+	 * the commit.
+	 * @param bucketId The value which uniquely identifies bucket the stream belongs to.
+	 * @param streamId The stream the events are appended to.
+	 * @param expectedRevision The revision the stream must be at, 0 for a new stream, or {@link #ANY_REVISION} to
+	 * append after whatever revision it is at.
+	 * @param events The events to append.
+	 * @param headers The metadata of the commit.
+	 * @throws ConcurrencyException if the stream is not at the expected revision
+	 * @throws StorageException
+	 * @throws StorageUnavailableException
+	 * @return the persisted commit
+	 */
+	Commit append(String bucketId, String streamId, long expectedRevision, Collection<EventMessage> events, Map<String,Object> headers);
+
+	/**
+	 * Same as {@link #append(String, String, long, Collection, Map)}, with the identifier of the commit so the writer
+	 * can safely retry it.
+	 * @param guid The value which uniquely identifies the commit within the stream.
+	 * @throws DuplicateCommitException if the commit has already been persisted
+	 */
+	Commit append(String bucketId, String streamId, long expectedRevision, UUID guid, Collection<EventMessage> events, Map<String,Object> headers);
+
+	/**
+	 * Commits the attempt, pre-commit hooks, persistence and post-commit hooks included, without blocking the caller.
+	 * @param attempt The series of events and associated metadata to be commited.
+	 * @return a future completed with the persisted commit, or exceptionally with the exceptions a synchronous commit
+	 * throws, or with a {@link java.util.concurrent.RejectedExecutionException} when the commit executor is saturated
+	 */
+	CompletableFuture<Commit> commitAsync(CommitAttempt attempt);
+
+	/**
+	 * Starts a unit of work, collecting the changes of several streams opened by this store to persist them in a
+	 * single transaction.
+	 * @return an empty unit of work
+	 */
+	UnitOfWork beginUnitOfWork();
+
 	/**
 	 * Starts the dispatch scheduler. If the dispatch scheduler is set to startup automatically, this will not have any affect.
 	 */
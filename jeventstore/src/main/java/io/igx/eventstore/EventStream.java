@@ -28,12 +28,14 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import io.igx.eventstore.exceptions.ConcurrencyException;
 import io.igx.eventstore.exceptions.DuplicateCommitException;
 import io.igx.eventstore.persistence.StorageException;
 import io.igx.eventstore.persistence.StorageUnavailableException;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * @author Vinicius Carvalho
@@ -77,6 +79,12 @@ public interface EventStream {
 	 */
 	Map<String,Object> getCommitedHeaders();
 
+	/**
+	 * Reads the committed headers without reading the committed events and without blocking the caller.
+	 * @return a Mono of the collection of committed headers associated with the stream, later commits overriding earlier ones.
+	 */
+	Mono<Map<String,Object>> getCommitedHeadersAsync();
+
 	/**
 	 *
 	 * @return a flux of yet-to-be-committed events that have not yet been persisted to durable storage.
@@ -105,6 +113,31 @@ public interface EventStream {
 	 */
 	void commitChanges(UUID guid);
 
+	/**
+	 * Commits the changes to durable storage, retrying on conflicts. When another commit got in first, only the
+	 * commits appended since this stream's revision are read, the resolver decides whether the uncommitted events
+	 * still apply after them and, if so, the changes are committed again on top of them after the policy's backoff.
+	 * @param guid The value which uniquely identifies the commit
+	 * @param resolver Decides whether the uncommitted events still apply after a conflict.
+	 * @param retryPolicy Bounds and spaces the attempts, and records their outcome.
+	 * @throws ConcurrencyException if the resolver refused the changes or the attempts ran out
+	 * @throws StorageUnavailableException
+	 * @throws StorageException
+	 * @throws DuplicateCommitException
+	 */
+	void commitChanges(UUID guid, ConflictResolver resolver, RetryPolicy retryPolicy);
+
+	/**
+	 * Commits the changes to durable storage without blocking the caller. The stream must not be used until the
+	 * returned future completes: adding events, clearing or committing changes meanwhile fails with an
+	 * {@link IllegalStateException} and the uncommitted headers are read-only.
+	 * @param guid The value which uniquely identifies the commit
+	 * @return a future completed with the persisted commit (null if there was nothing to commit), or completed
+	 * exceptionally with any of the exceptions thrown by {@link #commitChanges(UUID)}, or with a
+	 * {@link java.util.concurrent.RejectedExecutionException} when the commit executor is saturated
+	 */
+	CompletableFuture<Commit> commitChangesAsync(UUID guid);
+
 	/**
 	 *  Clears the uncommitted changes.
 	 */
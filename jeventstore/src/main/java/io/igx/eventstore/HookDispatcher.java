@@ -0,0 +1,223 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Vinicius Carvalho
+ * Delivers the commits of one {@link AsynchronousPipelineHook} on a dedicated thread. Commits wait in a bounded ring
+ * buffer and, with {@link AsynchronousPipelineHook.OverflowPolicy#SPILL}, in an unbounded overflow queue behind it;
+ * once anything spilled, later commits spill too until the overflow is drained, so delivery order is commit order.
+ * Commits are only queued while the dispatcher is open, under the same monitor {@link #close()} takes, so every commit
+ * accepted is delivered before the worker stops. Dispatch runs after the commit is persisted and never throws: commits
+ * arriving after close are logged and counted as dropped.
+ */
+public class HookDispatcher implements AutoCloseable {
+
+	private Logger logger = LoggerFactory.getLogger(HookDispatcher.class);
+
+	private final AsynchronousPipelineHook hook;
+	private final AsynchronousPipelineHook.OverflowPolicy overflowPolicy;
+	private final BlockingQueue<PendingCommit> buffer;
+	private final Queue<PendingCommit> overflow = new ConcurrentLinkedQueue<>();
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	private final LongAdder delivered = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder spilled = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final AtomicLong lastLagNanos = new AtomicLong();
+	private final AtomicLong maxLagNanos = new AtomicLong();
+
+	public HookDispatcher(AsynchronousPipelineHook hook) {
+		this.hook = hook;
+		this.overflowPolicy = hook.getOverflowPolicy();
+		this.buffer = new ArrayBlockingQueue<>(hook.getBufferSize());
+		this.worker = new Thread(this::run, "eventstore-hook-" + hook.getClass().getSimpleName());
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	public AsynchronousPipelineHook getHook() {
+		return hook;
+	}
+
+	/**
+	 * Queues the commit for the hook according to its overflow policy. With
+	 * {@link AsynchronousPipelineHook.OverflowPolicy#BLOCK} a full buffer makes the caller wait for room, or until the
+	 * dispatcher is closed; a caller interrupted while waiting spills the commit instead of losing it.
+	 * Once the dispatcher is closed the commit is dropped.
+	 */
+	public void dispatch(Commit committed) {
+		PendingCommit pending = new PendingCommit(committed);
+		synchronized (overflow){
+			while (true) {
+				if(!running){
+					logger.warn("Dispatcher of hook {} is closed, dropping commit {}", hook.getClass().getName(), committed.getGuid());
+					dropped.increment();
+					return;
+				}
+				if(overflow.isEmpty() && buffer.offer(pending))
+					return;
+				if(overflowPolicy == AsynchronousPipelineHook.OverflowPolicy.SPILL){
+					overflow.add(pending);
+					spilled.increment();
+					return;
+				}
+				if(overflowPolicy == AsynchronousPipelineHook.OverflowPolicy.DROP){
+					logger.debug("Buffer of hook {} is full, dropping commit {}", hook.getClass().getName(), committed.getGuid());
+					dropped.increment();
+					return;
+				}
+				try {
+					overflow.wait(100);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					logger.debug("Interrupted waiting for room in the buffer of hook {}, spilling commit {}", hook.getClass().getName(), committed.getGuid());
+					overflow.add(pending);
+					spilled.increment();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return commits waiting for the hook, buffered or spilled
+	 */
+	public int getPending() {
+		return buffer.size() + overflow.size();
+	}
+
+	public long getDelivered() {
+		return delivered.sum();
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	public long getSpilled() {
+		return spilled.sum();
+	}
+
+	/**
+	 *
+	 * @return commits whose delivery threw an exception
+	 */
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 *
+	 * @return time between the commit and its delivery to the hook, for the last commit delivered
+	 */
+	public long getLagMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(lastLagNanos.get());
+	}
+
+	public long getMaxLagMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get());
+	}
+
+	/**
+	 * Stops accepting commits, delivers the pending ones and waits for the worker thread to finish. Callers waiting for
+	 * room in the buffer give up.
+	 */
+	@Override
+	public void close() {
+		synchronized (overflow){
+			running = false;
+			overflow.notifyAll();
+		}
+		try {
+			worker.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		while (running || getPending() > 0) {
+			try {
+				PendingCommit pending = buffer.poll();
+				if(pending == null)
+					pending = overflow.poll();
+				if(pending == null)
+					pending = buffer.poll(100, TimeUnit.MILLISECONDS);
+				if(pending != null){
+					if(overflowPolicy == AsynchronousPipelineHook.OverflowPolicy.BLOCK){
+						synchronized (overflow){
+							overflow.notifyAll();
+						}
+					}
+					deliver(pending);
+				}
+			}
+			catch (InterruptedException e) {
+				logger.warn("Dispatcher of hook {} interrupted, {} commits still pending", hook.getClass().getName(), getPending());
+			}
+		}
+	}
+
+	private void deliver(PendingCommit pending) {
+		try {
+			hook.postCommit(pending.commit);
+			delivered.increment();
+		}
+		catch (RuntimeException e) {
+			failed.increment();
+			logger.error("Hook " + hook.getClass().getName() + " failed on commit " + pending.commit.getGuid(), e);
+		}
+		long lag = System.nanoTime() - pending.enqueuedAt;
+		lastLagNanos.set(lag);
+		maxLagNanos.accumulateAndGet(lag, Math::max);
+	}
+
+	private static class PendingCommit {
+		final Commit commit;
+		final long enqueuedAt = System.nanoTime();
+
+		PendingCommit(Commit commit) {
+			this.commit = commit;
+		}
+	}
+}
@@ -25,23 +25,28 @@
 package io.igx.eventstore;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.stream.Collector;
 
 import io.igx.eventstore.exceptions.ConcurrencyException;
 import io.igx.eventstore.exceptions.DuplicateCommitException;
 import io.igx.eventstore.exceptions.StreamNotFoundException;
 import io.igx.eventstore.persistence.PersistentStream;
+import io.igx.eventstore.persistence.StreamHead;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * @author Vinicius Carvalho
@@ -52,6 +57,8 @@ public final class OptimisticEventStream implements EventStream{
 
 	private final List<EventMessage> events;
 	private final PersistentStream persistence;
+	private final CommitEvent commitEvent;
+	private final Executor commitExecutor;
 	private final Map<String,Object> headers;
 
 	private String bucketId;
@@ -60,27 +67,67 @@ public final class OptimisticEventStream implements EventStream{
 	private Long commitSequence = 0L;
 	private Long minRevision = Long.MIN_VALUE;
 	private Long maxRevision = Long.MAX_VALUE;
+	/**
+	 * Set while {@link #commitChangesAsync(UUID)} is in flight, the commit task being the only one touching the
+	 * stream meanwhile; clearing it publishes the state the task left.
+	 */
+	private volatile boolean committing;
 
 	public OptimisticEventStream(String bucketId, String streamId, PersistentStream persistence){
 		this(bucketId,streamId,persistence,Long.MIN_VALUE,Long.MAX_VALUE);
 	}
 
 	public OptimisticEventStream(String bucketId, String streamId, PersistentStream persistence, Long minRevision, Long maxRevision){
-		this.bucketId = bucketId;
-		this.streamId = streamId;
-		this.persistence = persistence;
-		this.events = new LinkedList<EventMessage>();
-		this.headers = new HashMap<String, Object>();
-		this.commitSequence = persistence.getCurrentCommitSequence(bucketId,streamId,minRevision,maxRevision);
-		this.streamRevision.set(persistence.getCurrentStreamRevision(bucketId,streamId,minRevision,maxRevision));
+		this(bucketId,streamId,persistence,persistence,CommitExecutors.defaultExecutor(),minRevision,maxRevision);
+	}
+
+	/**
+	 * @param bucketId The bucket the stream belongs to.
+	 * @param streamId The stream identifier.
+	 * @param persistence The storage engine used to read the stream.
+	 * @param commitEvent Where the attempts are committed to, usually the {@link EventStore} so its pipeline hooks run.
+	 * @param commitExecutor The executor running {@link #commitChangesAsync(UUID)}.
+	 * @param minRevision The minimum revision of the stream to be read.
+	 * @param maxRevision The maximum revision of the stream to be read.
+	 */
+	public OptimisticEventStream(String bucketId, String streamId, PersistentStream persistence, CommitEvent commitEvent, Executor commitExecutor, Long minRevision, Long maxRevision){
+		this(bucketId,streamId,persistence.getStreamHead(bucketId,streamId),persistence,commitEvent,commitExecutor,minRevision,maxRevision);
 
 		//TODO: Find another way to throw error (count on db?)
 		//if( minRevision > 0 && committed.size() == 0)
 		//	throw new StreamNotFoundException();
 	}
 
+	/**
+	 * Builds a stream positioned at a head that is already known, without querying the storage.
+	 * @param bucketId The bucket the stream belongs to.
+	 * @param streamId The stream identifier.
+	 * @param head The current head of the stream, null for a stream without commits.
+	 * @param persistence The storage engine used to read the stream.
+	 * @param commitEvent Where the attempts are committed to, usually the {@link EventStore} so its pipeline hooks run.
+	 * @param commitExecutor The executor running {@link #commitChangesAsync(UUID)}.
+	 * @param minRevision The minimum revision of the stream to be read.
+	 * @param maxRevision The maximum revision of the stream to be read.
+	 */
+	public OptimisticEventStream(String bucketId, String streamId, StreamHead head, PersistentStream persistence, CommitEvent commitEvent, Executor commitExecutor, Long minRevision, Long maxRevision){
+		this.bucketId = bucketId;
+		this.streamId = streamId;
+		this.persistence = persistence;
+		this.commitEvent = commitEvent;
+		this.commitExecutor = commitExecutor;
+		this.events = new ArrayList<EventMessage>();
+		this.headers = new HashMap<String, Object>();
+		this.minRevision = (minRevision == null) ? Long.MIN_VALUE : minRevision;
+		this.maxRevision = (maxRevision == null) ? Long.MAX_VALUE : maxRevision;
+		applyHead(head);
+	}
+
 	public OptimisticEventStream(Snapshot snapshot, PersistentStream persistence, Long maxRevision){
-		this(snapshot.getBucketId(),snapshot.getStreamId(),persistence,Long.MIN_VALUE,maxRevision);
+		this(snapshot.getBucketId(),snapshot.getStreamId(),persistence,snapshot.getStreamRevision()+1,maxRevision);
+	}
+
+	public OptimisticEventStream(Snapshot snapshot, PersistentStream persistence, CommitEvent commitEvent, Executor commitExecutor, Long maxRevision){
+		this(snapshot.getBucketId(),snapshot.getStreamId(),persistence,commitEvent,commitExecutor,snapshot.getStreamRevision()+1,maxRevision);
 	}
 
 
@@ -103,18 +150,19 @@ public final class OptimisticEventStream implements EventStream{
 	public Flux<EventMessage> getCommitedEvents() {
 		return persistence
 				.from(this.bucketId,this.streamId,this.minRevision,this.maxRevision)
-				.flatMap(commit -> {return Flux.fromIterable(commit.getEvents());});
+				.flatMap(commit -> {return Flux.fromIterable(eventsWithinRevisions(commit));});
 	}
 
 	public Map<String, Object> getCommitedHeaders() {
-		return persistence.from(this.bucketId, this.streamId, this.minRevision,this.maxRevision)
-				.flatMap(commit -> {return Flux
-						.fromIterable(commit
-								.getHeaders()
-								.entrySet());})
-				.collect(Collectors
-						.toMap(Map.Entry::getKey,Map.Entry::getValue))
-				.get();
+		return getCommitedHeadersAsync().get();
+	}
+
+	public Mono<Map<String, Object>> getCommitedHeadersAsync() {
+		Collector<Map<String,Object>,Map<String,Object>,Map<String,Object>> merge = Collector.of(HashMap::new, Map::putAll, (merged, later) -> {
+			merged.putAll(later);
+			return merged;
+		});
+		return persistence.getCommitHeaders(this.bucketId, this.streamId, this.minRevision,this.maxRevision).collect(merge);
 	}
 
 	public List<EventMessage> getUncommitedEvents() {
@@ -122,10 +170,11 @@ public final class OptimisticEventStream implements EventStream{
 	}
 
 	public Map<String, Object> getUncommitedHeaders() {
-		return headers;
+		return committing ? Collections.unmodifiableMap(headers) : headers;
 	}
 
 	public void add(EventMessage uncommittedEvent) {
+		ensureIdle();
 		if(uncommittedEvent == null || uncommittedEvent.getBody() == null)
 			return;
 		logger.debug("Appending uncommitted event to stream {}",streamId);
@@ -134,33 +183,207 @@ public final class OptimisticEventStream implements EventStream{
 
 	public void commitChanges(UUID guid) {
 		logger.debug("Attempting to commit all changes on stream {} to the underlying store.",streamId);
+		ensureIdle();
 
 		if(!hasChanges())
 			return;
 		try{
 			persistChanges(guid);
 		} catch (ConcurrencyException ex){
-			logger.info("The underlying stream {} has changed since the last known commit, refreshing the stream.",streamId);
-			this.commitSequence = persistence.getCurrentCommitSequence(bucketId,streamId,streamRevision.get(),Long.MAX_VALUE);
-			this.streamRevision.set(persistence.getCurrentStreamRevision(bucketId,streamId,streamRevision.get(),Long.MAX_VALUE));
+			refresh();
 			throw ex;
 		}
 
 	}
 
+	public void commitChanges(UUID guid, ConflictResolver resolver, RetryPolicy retryPolicy) {
+		logger.debug("Attempting to commit all changes on stream {} to the underlying store, retrying on conflicts.",streamId);
+		ensureIdle();
 
+		if(!hasChanges())
+			return;
+		for(int attempt = 1; ; attempt++){
+			try{
+				persistChanges(guid);
+				retryPolicy.recordSuccess(attempt);
+				return;
+			} catch (ConcurrencyException ex){
+				List<EventMessage> committed = catchUp();
+				if(attempt >= retryPolicy.getMaxAttempts() || !resolver.canApply(getUncommitedEvents(), committed)){
+					retryPolicy.recordFailure(attempt);
+					throw ex;
+				}
+				backoff(retryPolicy.backoffMillis(attempt), ex);
+			}
+		}
+	}
+
+	public CompletableFuture<Commit> commitChangesAsync(UUID guid) {
+		logger.debug("Attempting to asynchronously commit all changes on stream {} to the underlying store.",streamId);
+		ensureIdle();
+
+		if(!hasChanges())
+			return CompletableFuture.completedFuture(null);
+		CommitAttempt attempt = buildCommitAttempt(guid);
+		CompletableFuture<Commit> result = new CompletableFuture<>();
+		committing = true;
+		CommitExecutors.supplyAsync(() -> commitEvent.commit(attempt), commitExecutor).whenComplete((commit, error) -> {
+			Commit committed = commit;
+			Throwable failure = null;
+			try {
+				if(error == null){
+					onCommitted(attempt, commit);
+				}
+				else {
+					failure = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+					committed = originalOf(attempt, failure);
+					if(committed != null){
+						onCommitted(attempt, committed);
+						failure = null;
+					}
+					else if(failure instanceof ConcurrencyException || failure instanceof DuplicateCommitException){
+						refresh();
+					}
+				}
+			}
+			catch (RuntimeException e) {
+				if(failure == null){
+					failure = e;
+				}
+				else {
+					failure.addSuppressed(e);
+				}
+			}
+			finally {
+				committing = false;
+			}
+			if(failure != null){
+				result.completeExceptionally(failure);
+			}
+			else {
+				result.complete(committed);
+			}
+		});
+		return result;
+	}
+
+	private void ensureIdle(){
+		if(committing)
+			throw new IllegalStateException("Stream '" + streamId + "' can not be changed while an asynchronous commit is in flight");
+	}
 
 	private void persistChanges(UUID guid){
 		CommitAttempt attempt = buildCommitAttempt(guid);
 		logger.debug("Pushing attempt {} on stream {} to the underlying store.",guid,streamId);
-		Commit commit = persistence.commit(attempt);
+		Commit commit;
+		try {
+			commit = commitEvent.commit(attempt);
+		}
+		catch (DuplicateCommitException ex){
+			commit = originalOf(attempt, ex);
+			if(commit == null){
+				refresh();
+				throw ex;
+			}
+		}
+		onCommitted(attempt, commit);
+	}
+
+	/**
+	 * Only moves the stream forward: the commit may be the original of a retried attempt, older than commits the
+	 * stream already caught up with. Only the changes carried by the attempt are cleared, changes added while it was
+	 * being committed stay.
+	 */
+	void onCommitted(CommitAttempt attempt, Commit commit){
+		if(commit.getCommitSequence() > this.commitSequence){
+			this.commitSequence = commit.getCommitSequence();
+		}
+		if(commit.getStreamRevision() > this.streamRevision.get()){
+			this.streamRevision.set(commit.getStreamRevision());
+		}
+		clearCommitted(attempt);
+	}
+
+	/**
+	 * The events of an attempt are a snapshot of the head of the buffer, so they are removed by position.
+	 */
+	private void clearCommitted(CommitAttempt attempt){
+		int committed = Math.min(attempt.getEvents().size(), events.size());
+		if(committed == events.size() && attempt.getHeaders().equals(headers)){
+			events.clear();
+			headers.clear();
+			return;
+		}
+		events.subList(0, committed).clear();
+		for (Map.Entry<String, Object> header : attempt.getHeaders().entrySet()) {
+			headers.remove(header.getKey(), header.getValue());
+		}
+	}
 
-		this.commitSequence = commit.getCommitSequence();
-		populateStream(streamRevision.incrementAndGet(),attempt.streamRevision, Collections.singletonList(commit));
-		clearChanges();
+	/**
+	 * A retried attempt whose commit is already persisted succeeded, the original commit stands for it. An original
+	 * with another commit id is a different commit, not a retry.
+	 * @return the original commit if the error reports one for this attempt, null otherwise
+	 */
+	private Commit originalOf(CommitAttempt attempt, Throwable error){
+		if(!(error instanceof DuplicateCommitException))
+			return null;
+		Commit original = ((DuplicateCommitException) error).getOriginal();
+		if(original == null || !attempt.getGuid().equals(original.getGuid()))
+			return null;
+		logger.info("Commit {} on stream {} had already been persisted, keeping the original.",original.getGuid(),streamId);
+		return original;
+	}
+
+	void refresh(){
+		logger.info("The underlying stream {} has changed since the last known commit, refreshing the stream.",streamId);
+		applyHead(persistence.getStreamHead(bucketId,streamId));
+	}
+
+	/**
+	 * Moves the stream to the head of the storage reading only the commits appended after its current revision.
+	 * @return the events of those commits
+	 */
+	private List<EventMessage> catchUp(){
+		logger.info("The underlying stream {} has changed since revision {}, reading the new commits.",streamId,streamRevision.get());
+		List<Commit> commits = persistence.from(bucketId,streamId,streamRevision.get()+1,Long.MAX_VALUE).toList().get();
+		if(commits.isEmpty()){
+			refresh();
+			return Collections.emptyList();
+		}
+		List<EventMessage> committed = new ArrayList<>();
+		for (Commit commit : commits) {
+			committed.addAll(commit.getEvents());
+			this.commitSequence = Math.max(this.commitSequence, commit.getCommitSequence());
+			this.streamRevision.set(Math.max(this.streamRevision.get(), commit.getStreamRevision()));
+		}
+		return committed;
+	}
+
+	private void backoff(long millis, ConcurrencyException conflict){
+		if(millis <= 0)
+			return;
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw conflict;
+		}
+	}
+
+	private void applyHead(StreamHead head){
+		if(head == null){
+			this.commitSequence = 0L;
+			this.streamRevision.set(0L);
+			return;
+		}
+		this.commitSequence = head.getHeadCommitSequence();
+		this.streamRevision.set(head.getHeadRevision());
 	}
 
 	public void clearChanges() {
+		ensureIdle();
 		logger.debug("Clearing all uncommitted changes on stream {}",streamId);
 		events.clear();
 		headers.clear();
@@ -218,7 +441,24 @@ public final class OptimisticEventStream implements EventStream{
 		}
 	}
 
-	private CommitAttempt buildCommitAttempt(UUID guid){
+	/**
+	 * The storage only returns commits overlapping [minRevision, maxRevision], but the first and last of them may
+	 * carry events outside of it. Those are skipped without copying the remaining ones.
+	 */
+	private Iterable<EventMessage> eventsWithinRevisions(Commit commit){
+		Collection<EventMessage> committed = commit.getEvents();
+		long last = commit.getStreamRevision();
+		long first = last - committed.size() + 1;
+		long skip = minRevision > first ? minRevision - first : 0;
+		long end = maxRevision < last ? maxRevision - first + 1 : committed.size();
+		if(skip == 0 && end == committed.size())
+			return committed;
+		long limit = Math.max(0, end - skip);
+		logger.debug("Ignoring some events on commit {} of stream {} because they are outside of revisions {} and {}.", commit.getGuid(), streamId, minRevision, maxRevision);
+		return () -> committed.stream().skip(skip).limit(limit).iterator();
+	}
+
+	CommitAttempt buildCommitAttempt(UUID guid){
 		logger.debug("Building a commit attempt {} on stream {}.",guid,streamId);
 		CommitAttempt attempt = new CommitAttempt(bucketId,
 				streamId,
@@ -226,11 +466,26 @@ public final class OptimisticEventStream implements EventStream{
 				guid,
 				commitSequence+1,
 				System.currentTimeMillis(),
-				headers,
-				events);
+				copyOf(headers),
+				new ArrayList<>(events));
 		return attempt;
 	}
 
+	/**
+	 * Most commits carry no header or a single one, neither needs a hash table of its own.
+	 */
+	private static Map<String,Object> copyOf(Map<String,Object> headers){
+		switch (headers.size()){
+			case 0:
+				return Collections.emptyMap();
+			case 1:
+				Map.Entry<String,Object> header = headers.entrySet().iterator().next();
+				return Collections.singletonMap(header.getKey(), header.getValue());
+			default:
+				return new HashMap<>(headers);
+		}
+	}
+
 	private boolean hasChanges(){
 		if(events.size() > 0)
 			return true;
@@ -24,11 +24,22 @@
 
 package io.igx.eventstore;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
+import io.igx.eventstore.exceptions.ConcurrencyException;
+import io.igx.eventstore.exceptions.DuplicateCommitException;
 import io.igx.eventstore.persistence.PersistentStream;
+import io.igx.eventstore.persistence.StreamHead;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
@@ -36,39 +47,317 @@ import reactor.core.publisher.Flux;
 /**
  * @author Vinicius Carvalho
  */
-public class OptmisticEventStore implements EventStore, CommitEvent{
+public class OptmisticEventStore implements EventStore, CommitEvent, AutoCloseable {
 
 	protected final PersistentStream persistentStream;
 	protected final Collection<PipelineHook> hooks;
+	private final PipelineHook[] pipeline;
+	protected final Executor commitExecutor;
+	protected final CommitLanes commitLanes;
+	private final List<StreamHeadSource> headSources;
+	private final Map<PipelineHook,HookDispatcher> hookDispatchers;
+	private final RecentCommits recentCommits = new RecentCommits(1024, 8);
+	private final LongAdder avoidedRoundTrips = new LongAdder();
+	private final LongAdder cachedOpens = new LongAdder();
+	private final LongAdder duplicateCommits = new LongAdder();
 	private Logger logger = LoggerFactory.getLogger(getClass());
 
 	public OptmisticEventStore(PersistentStream persistentStream, Collection<PipelineHook> hooks) {
+		this(persistentStream, hooks, CommitExecutors.defaultExecutor());
+	}
+
+	/**
+	 * @param persistentStream The underlying persistence engine.
+	 * @param hooks The pipeline hooks invoked around each commit.
+	 * @param commitExecutor The executor running asynchronous commits, see {@link CommitExecutors#newBoundedExecutor(int, int)}.
+	 */
+	public OptmisticEventStore(PersistentStream persistentStream, Collection<PipelineHook> hooks, Executor commitExecutor) {
+		this(persistentStream, hooks, commitExecutor, null);
+	}
+
+	/**
+	 * @param persistentStream The underlying persistence engine.
+	 * @param hooks The pipeline hooks invoked around each commit.
+	 * @param commitExecutor The executor running asynchronous commits when no lanes are given.
+	 * @param commitLanes The lanes running asynchronous commits one stream at a time, null to use the commit executor.
+	 */
+	public OptmisticEventStore(PersistentStream persistentStream, Collection<PipelineHook> hooks, Executor commitExecutor, CommitLanes commitLanes) {
 		if(persistentStream == null)
 			throw new IllegalArgumentException("Persistence can not be null");
+		if(commitExecutor == null)
+			throw new IllegalArgumentException("Commit executor can not be null");
 		this.persistentStream = persistentStream;
 		this.hooks = (hooks == null) ? Collections.emptyList() : hooks;
+		this.pipeline = this.hooks.toArray(new PipelineHook[this.hooks.size()]);
+		this.commitExecutor = commitExecutor;
+		this.commitLanes = commitLanes;
+		this.headSources = new ArrayList<>();
+		this.hookDispatchers = new IdentityHashMap<>();
+		for (PipelineHook hook : this.hooks) {
+			if(hook instanceof StreamHeadSource){
+				headSources.add((StreamHeadSource) hook);
+			}
+			if(hook instanceof AsynchronousPipelineHook){
+				hookDispatchers.put(hook, new HookDispatcher((AsynchronousPipelineHook) hook));
+			}
+		}
 		//TODO how are we going to deal with pipeline hooks and decorator?
 	}
 
 	public Flux<Commit> from(String bucketId, String streamId, Long minRevision, Long maxRevision) {
-		return persistentStream.from(bucketId,streamId,minRevision,maxRevision);
+		Flux<Commit> commits = persistentStream.from(bucketId,streamId,minRevision,maxRevision);
+		if(hooks.isEmpty()){
+			return commits;
+		}
+		return commits.flatMap(commit -> {
+			Commit selected = select(commit);
+			return (selected == null) ? Flux.<Commit>empty() : Flux.just(selected);
+		});
 	}
 
+	/**
+	 * Runs the attempt through the pre-commit hooks, persists it and hands the result to the post-commit hooks. The
+	 * first hook rejecting the attempt or detecting a conflict stops the pipeline before storage is reached.
+	 * The retry of one of the latest commits of a stream is recognized by its identifier before any hook runs.
+	 * @throws ConcurrencyException if a hook rejected the attempt or it conflicts with a persisted commit
+	 * @throws DuplicateCommitException if a commit with the same identifier has already been persisted on the stream
+	 */
 	public Commit commit(CommitAttempt attempt) {
-		for (PipelineHook hook: hooks) {
+		checkRecentCommits(attempt);
+		preCommit(attempt);
+		logger.debug("Committing attempt '{}' which contains {} events to the underlying persistence engine.", attempt.getGuid(), attempt.getEvents().size());
+		Commit commit = null;
+		try {
+			commit = persistentStream.commit(attempt);
+		}
+		catch (ConcurrencyException e) {
+			headSources.forEach(source -> source.invalidate(attempt.getBucketId(), attempt.getStreamId()));
+			throw e;
+		}
+		catch (DuplicateCommitException e) {
+			onDuplicate(e);
+			throw e;
+		}
+		postCommit(commit);
+		return commit;
+	}
+
+	/**
+	 * Runs every attempt through the pre-commit hooks, persists them all in a single transaction and hands the results to
+	 * the post-commit hooks. Either every attempt is persisted or none is.
+	 * @param attempts The attempts to persist together, at most one per stream.
+	 * @return the commits, in the order of the attempts
+	 * @throws ConcurrencyException if a hook rejected one of the attempts or one of them conflicts with a persisted
+	 * commit, {@link ConcurrencyException#getStreamId()} tells which stream when it is known
+	 * @throws DuplicateCommitException if one of the attempts has already been persisted on its stream
+	 */
+	public List<Commit> commitAll(List<CommitAttempt> attempts) {
+		for (CommitAttempt attempt : attempts) {
+			checkRecentCommits(attempt);
+			preCommit(attempt);
+		}
+		logger.debug("Committing {} attempts to the underlying persistence engine in a single transaction.", attempts.size());
+		List<Commit> commits;
+		try {
+			commits = persistentStream.commitAll(attempts);
+		}
+		catch (ConcurrencyException e) {
+			for (CommitAttempt attempt : attempts) {
+				if(e.getStreamId() == null || (attempt.getStreamId().equals(e.getStreamId()) && attempt.getBucketId().equals(e.getBucketId()))){
+					headSources.forEach(source -> source.invalidate(attempt.getBucketId(), attempt.getStreamId()));
+				}
+			}
+			throw e;
+		}
+		catch (DuplicateCommitException e) {
+			onDuplicate(e);
+			throw e;
+		}
+		commits.forEach(this::postCommit);
+		return commits;
+	}
+
+	public Commit append(String bucketId, String streamId, long expectedRevision, Collection<EventMessage> events, Map<String,Object> headers) {
+		return append(bucketId, streamId, expectedRevision, UUID.randomUUID(), events, headers);
+	}
+
+	/**
+	 * Appends in a single storage transaction. A tracked head already past the expected revision refuses the append
+	 * without reaching storage, the pre-commit hooks run within the transaction once the attempt is built.
+	 */
+	public Commit append(String bucketId, String streamId, long expectedRevision, UUID guid, Collection<EventMessage> events, Map<String,Object> headers) {
+		if(events == null || events.isEmpty())
+			throw new IllegalArgumentException("There are no events to append to stream " + streamId);
+		Commit original = recentCommits.get(bucketId, streamId, guid);
+		if(original != null){
+			duplicateCommits.increment();
+			throw new DuplicateCommitException(original);
+		}
+		if(expectedRevision != ANY_REVISION){
+			for (StreamHeadSource source : headSources) {
+				StreamHead head = source.getStreamHead(bucketId, streamId);
+				if(head != null && head.getHeadRevision() > expectedRevision){
+					avoidedRoundTrips.increment();
+					throw new ConcurrencyException(bucketId, streamId, "Stream '" + streamId + "' is at revision " + head.getHeadRevision() + ", expected " + expectedRevision);
+				}
+			}
+		}
+		logger.debug("Appending {} events to stream '{}' expecting revision {}.", events.size(), streamId, expectedRevision);
+		Commit commit;
+		try {
+			commit = persistentStream.append(bucketId, streamId, expectedRevision, guid, events, headers, this::preCommit);
+		}
+		catch (ConcurrencyException e) {
+			headSources.forEach(source -> source.invalidate(bucketId, streamId));
+			throw e;
+		}
+		catch (DuplicateCommitException e) {
+			onDuplicate(e);
+			throw e;
+		}
+		postCommit(commit);
+		return commit;
+	}
+
+	/**
+	 * Starts collecting the changes of several streams to commit them with {@link #commitAll(List)}.
+	 */
+	public UnitOfWork beginUnitOfWork() {
+		return new UnitOfWork(this);
+	}
+
+	private void checkRecentCommits(CommitAttempt attempt) {
+		Commit original = recentCommits.get(attempt.getBucketId(), attempt.getStreamId(), attempt.getGuid());
+		if(original != null){
+			logger.info("Attempt '{}' has already been committed at checkpoint {}.", attempt.getGuid(), original.getCheckpointToken());
+			duplicateCommits.increment();
+			throw new DuplicateCommitException(original);
+		}
+	}
+
+	private void preCommit(CommitAttempt attempt) {
+		for (PipelineHook hook: pipeline) {
 			logger.debug("Pushing commit '{}' to pre-commit hook of type '{}'.",attempt.getGuid(),hook.getClass().getName());
-			if(hook.preCommit(attempt)) {
+			boolean accepted;
+			try {
+				accepted = hook.preCommit(attempt);
+			}
+			catch (ConcurrencyException e) {
+				avoidedRoundTrips.increment();
+				throw e;
+			}
+			if(accepted) {
 				continue;
 			}
 			logger.info("Pipeline hook of type '{}' rejected attempt '{}'.", hook.getClass().getName(), attempt.getGuid());
+			avoidedRoundTrips.increment();
+			throw new ConcurrencyException(attempt.getBucketId(), attempt.getStreamId(), "Pipeline hook of type " + hook.getClass().getName() + " rejected attempt " + attempt.getGuid());
 		}
-		logger.info("Committing attempt '{}' which contains {} events to the underlying persistence engine.", attempt.getGuid(), attempt.getEvents().size());
-		Commit commit = persistentStream.commit(attempt);
-		for (PipelineHook hook: hooks) {
-			logger.debug("Pushing commit '{}' to post-commit hook of type '{}'.", attempt.getGuid(), hook.getClass().getName());
-			hook.postCommit(commit);
+	}
+
+	private void postCommit(Commit commit) {
+		recentCommits.add(commit);
+		for (PipelineHook hook: pipeline) {
+			logger.debug("Pushing commit '{}' to post-commit hook of type '{}'.", commit.getGuid(), hook.getClass().getName());
+			HookDispatcher dispatcher = hookDispatchers.get(hook);
+			if(dispatcher != null){
+				dispatcher.dispatch(commit);
+			}
+			else {
+				hook.postCommit(commit);
+			}
 		}
-		return commit;
+	}
+
+	private void onDuplicate(DuplicateCommitException e) {
+		duplicateCommits.increment();
+		if(e.getOriginal() != null){
+			recentCommits.add(e.getOriginal());
+		}
+	}
+
+	/**
+	 * Runs {@link #commit(CommitAttempt)}, pre-commit hooks, persistence and post-commit hooks included, on the commit executor.
+	 */
+	@Override
+	public CompletableFuture<Commit> commitAsync(CommitAttempt attempt) {
+		return CommitExecutors.supplyAsync(() -> commit(attempt), executorFor(attempt.getBucketId(), attempt.getStreamId()));
+	}
+
+	/**
+	 * Opens the stream and runs the command against it on the stream's lane, so no other command of this store
+	 * touches the stream in the meantime and its commits can not conflict with them. Without lanes the command runs
+	 * on the commit executor and gets no such guarantee.
+	 * The command must commit synchronously, waiting on {@link EventStream#commitChangesAsync(java.util.UUID)} from within a
+	 * lane would wait on the lane itself.
+	 * @return a future completed with the result of the command
+	 */
+	public <T> CompletableFuture<T> execute(String bucketId, String streamId, Function<EventStream,T> command) {
+		return CommitExecutors.supplyAsync(() -> command.apply(open(bucketId, streamId, Long.MIN_VALUE, Long.MAX_VALUE)), executorFor(bucketId, streamId));
+	}
+
+	/**
+	 *
+	 * @return number of attempts refused by the pre-commit hooks, each one an INSERT that never reached storage
+	 */
+	public long getAvoidedRoundTrips() {
+		return avoidedRoundTrips.sum();
+	}
+
+	/**
+	 *
+	 * @return number of streams opened from a head known by a {@link StreamHeadSource}, without querying the storage
+	 */
+	public long getCachedOpens() {
+		return cachedOpens.sum();
+	}
+
+	/**
+	 *
+	 * @return number of attempts recognized as the retry of a persisted commit
+	 */
+	public long getDuplicateCommits() {
+		return duplicateCommits.sum();
+	}
+
+	/**
+	 *
+	 * @return the dispatchers delivering commits to the asynchronous hooks, with their backlog and lag
+	 */
+	public Collection<HookDispatcher> getHookDispatchers() {
+		return Collections.unmodifiableCollection(hookDispatchers.values());
+	}
+
+	/**
+	 * Delivers the commits still pending for asynchronous hooks and stops their threads. Called by Spring when the store
+	 * is a bean, as for any {@code AutoCloseable} bean.
+	 */
+	@Override
+	public void close() {
+		hookDispatchers.values().forEach(HookDispatcher::close);
+	}
+
+	/**
+	 * Deletes a stream from storage and lets the pipeline hooks know about it.
+	 */
+	public void deleteStream(String bucketId, String streamId) {
+		persistentStream.deleteStream(bucketId, streamId);
+		recentCommits.remove(bucketId, streamId);
+		hooks.forEach(hook -> hook.onDeleteStream(bucketId, streamId));
+	}
+
+	/**
+	 * Purges a bucket, or the whole storage when bucketId is null, and lets the pipeline hooks know about it.
+	 */
+	public void purge(String bucketId) {
+		if(bucketId == null){
+			persistentStream.purge();
+		}
+		else {
+			persistentStream.purge(bucketId);
+		}
+		recentCommits.removeBucket(bucketId);
+		hooks.forEach(hook -> hook.onPurge(bucketId));
 	}
 
 	@Override
@@ -78,13 +367,13 @@ public class OptmisticEventStore implements EventStore, CommitEvent{
 
 	public EventStream create(String bucketId, String streamId) {
 		logger.info("Creating stream '{}' in bucket '{}'.",streamId,bucketId);
-		return new OptimisticEventStream(bucketId,streamId,this.persistentStream);
+		return new OptimisticEventStream(bucketId,streamId,null,this.persistentStream,this,executorFor(bucketId,streamId),Long.MIN_VALUE,Long.MAX_VALUE);
 	}
 
 	public EventStream open(String bucketId, String streamId, Long minRevision, Long maxRevision) {
 		maxRevision = maxRevision <= 0 ? Integer.MAX_VALUE : maxRevision;
 		logger.debug("Opening stream '{}' from bucket '{}' between revisions {} and {}.", streamId, bucketId, minRevision, maxRevision);
-		return new OptimisticEventStream(bucketId, streamId, this.persistentStream, minRevision, maxRevision);
+		return new OptimisticEventStream(bucketId, streamId, streamHead(bucketId, streamId), this.persistentStream, this, executorFor(bucketId, streamId), minRevision, maxRevision);
 	}
 
 	public EventStream open(Snapshot snapshot, Long maxRevision) {
@@ -93,7 +382,35 @@ public class OptmisticEventStore implements EventStore, CommitEvent{
 		}
 		logger.debug("Opening stream '{}' with snapshot at {} up to revision {}.", snapshot.getStreamId(), snapshot.getStreamRevision(), maxRevision);
 		maxRevision = maxRevision <= 0 ? Integer.MAX_VALUE : maxRevision;
-		return new OptimisticEventStream(snapshot, this.persistentStream, maxRevision);
+		return new OptimisticEventStream(snapshot.getBucketId(), snapshot.getStreamId(), streamHead(snapshot.getBucketId(), snapshot.getStreamId()), this.persistentStream, this, executorFor(snapshot.getBucketId(), snapshot.getStreamId()), snapshot.getStreamRevision() + 1, maxRevision);
+	}
+
+	private Executor executorFor(String bucketId, String streamId) {
+		return (commitLanes != null) ? commitLanes.laneFor(bucketId, streamId) : commitExecutor;
+	}
+
+	private Commit select(Commit commit) {
+		Commit selected = commit;
+		for (PipelineHook hook : hooks) {
+			selected = hook.select(selected);
+			if(selected == null){
+				logger.debug("Pipeline hook of type '{}' filtered out commit '{}'.", hook.getClass().getName(), commit.getGuid());
+				return null;
+			}
+		}
+		return selected;
+	}
+
+	private StreamHead streamHead(String bucketId, String streamId) {
+		for (StreamHeadSource source : headSources) {
+			StreamHead head = source.getStreamHead(bucketId, streamId);
+			if(head != null){
+				logger.debug("Opening stream '{}' from bucket '{}' at its tracked head.", streamId, bucketId);
+				cachedOpens.increment();
+				return head;
+			}
+		}
+		return persistentStream.getStreamHead(bucketId, streamId);
 	}
 
 	@Override
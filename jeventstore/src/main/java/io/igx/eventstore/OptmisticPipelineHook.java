@@ -24,67 +24,63 @@
 
 package io.igx.eventstore;
 
-import java.util.ConcurrentModificationException;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-
-import io.igx.eventstore.persistence.StorageException;
+import io.igx.eventstore.exceptions.ConcurrencyException;
+import io.igx.eventstore.persistence.StreamHead;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * @author Vinicius Carvalho
  * Tracks the heads of streams to reduce latency by avoiding roundtrips to storage.
+ * Heads live in a {@link StreamHeadCache}, so committing threads only contend when they work on streams sharing a
+ * cache segment. The tracked heads are also used to open streams without querying the storage.
  */
-public class OptmisticPipelineHook implements PipelineHook {
+public class OptmisticPipelineHook implements PipelineHook, StreamHeadSource {
 
 	private final static int MAX_STREAMS_TO_TRACK = 128;
-	private Integer maxStreamsToTrack;
 	private Logger logger = LoggerFactory.getLogger(OptmisticPipelineHook.class);
-	private final Map<HeadKey,Commit> heads;
-	private final LinkedList<HeadKey> maxItemsToTrack;
+	private final StreamHeadCache heads;
 
 	public OptmisticPipelineHook(){
 		this(MAX_STREAMS_TO_TRACK);
 	}
 
 	public OptmisticPipelineHook(Integer maxStreamsToTrack){
-		this.maxStreamsToTrack = maxStreamsToTrack;
-		this.heads = new ConcurrentHashMap<HeadKey, Commit>();
-		this.maxItemsToTrack = new LinkedList<HeadKey>();
+		this(new StreamHeadCache(maxStreamsToTrack));
+	}
+
+	public OptmisticPipelineHook(StreamHeadCache heads){
+		this.heads = heads;
 	}
 
 	public Commit select(Commit committed) {
-		track(committed);
+		if(committed != null){
+			heads.advance(committed);
+		}
 		return committed;
 	}
 
 	public boolean preCommit(CommitAttempt attempt) {
 		logger.debug("Verifying that no other commits have succeed on the stream '{}'.",attempt.getStreamId());
-		Commit head = getStreamHead(getHeadKey(attempt));
+		StreamHead head = heads.get(attempt.getBucketId(),attempt.getStreamId());
 
 		if (head == null)
 		{
 			return true;
 		}
 
-		if(head.getCommitSequence() >= attempt.getCommitSequence()){
-			throw new ConcurrentModificationException();
+		if(head.getHeadCommitSequence() >= attempt.getCommitSequence()){
+			throw new ConcurrencyException(attempt.getBucketId(), attempt.getStreamId(), "Commit sequence " + attempt.getCommitSequence() + " of stream '" + attempt.getStreamId() + "' is already taken, head is at " + head.getHeadCommitSequence());
 		}
 
-		if(head.getStreamRevision() >= attempt.getStreamRevision()){
-			throw new ConcurrentModificationException();
+		if(head.getHeadRevision() >= attempt.getStreamRevision()){
+			throw new ConcurrencyException(attempt.getBucketId(), attempt.getStreamId(), "Revision " + attempt.getStreamRevision() + " of stream '" + attempt.getStreamId() + "' is already taken, head is at " + head.getHeadRevision());
 		}
 
-		if(head.getCommitSequence() <= attempt.getCommitSequence() -1){
-			throw new StorageException();
-		}
-
-		if(head.getStreamRevision() <= attempt.getStreamRevision() - attempt.getEvents().size()){
-			throw new StorageException();
+		if(head.getHeadCommitSequence() < attempt.getCommitSequence() - 1 || head.getHeadRevision() < attempt.getStreamRevision() - attempt.getEvents().size()){
+			logger.debug("Tracked head of stream '{}' is behind the attempt, leaving the decision to storage.",attempt.getStreamId());
+			heads.remove(attempt.getBucketId(),attempt.getStreamId());
+			return true;
 		}
 
 		logger.debug("No other commits have been discovered that conflict for stream '{}'.",attempt.getStreamId());
@@ -96,144 +92,34 @@ public class OptmisticPipelineHook implements PipelineHook {
 	}
 
 	public void onPurge(final String bucketId) {
-		synchronized (maxItemsToTrack){
-			if(bucketId == null){
-				heads.clear();
-				maxItemsToTrack.clear();
-				return;
-			}
-			List<HeadKey> headKeys = heads.keySet().stream().filter(k -> k.getBucketId() == bucketId).collect(Collectors.<HeadKey>toList());
-			headKeys.forEach(headKey -> removeHead(headKey));
-		}
+		heads.removeBucket(bucketId);
 	}
 
 	public void onDeleteStream(String bucketId, String streamId) {
-		synchronized (maxItemsToTrack){
-			removeHead(new HeadKey(bucketId,streamId));
-		}
+		heads.remove(bucketId,streamId);
 	}
 
 	public void track(Commit committed){
 		if(committed == null)
 			return;
 
-		synchronized (maxItemsToTrack){
-			updateStreamHead(committed);
-			trackUpToCapacity(committed);
-		}
-
-	}
-
-
-	public boolean contains(Commit attempt){
-		return getStreamHead(getHeadKey(attempt)) != null;
-	}
-
-
-
-	private void updateStreamHead(Commit committed){
-		HeadKey headKey = getHeadKey(committed);
-		Commit head = getStreamHead(headKey);
-
-		if(alreadyTracked(head)){
-			maxItemsToTrack.remove(headKey);
-		}
-
-		head = (head == null) ? head : committed;
-		head = head.getStreamRevision() > committed.getStreamRevision() ? head : committed;
-
-		heads.put(headKey,head);
-	}
-
-
-	private static boolean alreadyTracked(Commit head)
-	{
-		return head != null;
-	}
-
-	private void removeHead(HeadKey headKey){
-		heads.remove(headKey);
-		HeadKey node = maxItemsToTrack.stream().filter(headKey1 -> headKey1.equals(headKey)).findFirst().get();
-		if (node != null){
-			maxItemsToTrack.remove(node);
-		}
-	}
-
-
-	private void trackUpToCapacity(Commit committed){
 		logger.debug("Tracking commit {} on stream '{}'",committed.getCommitSequence(),committed.getStreamId());
-		maxItemsToTrack.addFirst(getHeadKey(committed));
-		if(maxItemsToTrack.size() <= maxStreamsToTrack){
-			return;
-		}
-		HeadKey expired = maxItemsToTrack.getLast();
-		logger.debug("Purging all commits on stream '{}' from tracking.",expired);
-		heads.remove(expired);
-		maxItemsToTrack.removeLast();
+		heads.update(committed);
 	}
 
 
-	private HeadKey getHeadKey(Commit commit){
-		return new HeadKey(commit.getBucketId(),commit.getStreamId());
-	}
-	private HeadKey getHeadKey(CommitAttempt attempt){
-		return new HeadKey(attempt.getBucketId(),attempt.getStreamId());
+	public boolean contains(Commit attempt){
+		return heads.get(attempt.getBucketId(),attempt.getStreamId()) != null;
 	}
 
-	private Commit getStreamHead(HeadKey attempt){
-		synchronized (maxItemsToTrack){
-			return heads.get(attempt);
-		}
+	@Override
+	public StreamHead getStreamHead(String bucketId, String streamId) {
+		return heads.get(bucketId,streamId);
 	}
 
-
-
-
-	private final class HeadKey {
-		private final String bucketId;
-		private final String streamId;
-
-		public HeadKey(String bucketId, String streamId) {
-			this.bucketId = bucketId;
-			this.streamId = streamId;
-		}
-
-
-		@Override
-		public boolean equals(Object o) {
-			if (this == o) return true;
-			if (o == null || getClass() != o.getClass()) return false;
-
-			HeadKey headKey = (HeadKey) o;
-
-			if (bucketId != null ? !bucketId.equals(headKey.bucketId) : headKey.bucketId != null) return false;
-			return streamId != null ? streamId.equals(headKey.streamId) : headKey.streamId == null;
-
-		}
-
-		@Override
-		public int hashCode() {
-			int result = bucketId != null ? bucketId.hashCode() : 0;
-			result = 31 * result + (streamId != null ? streamId.hashCode() : 0);
-			return result;
-		}
-
-		public String getBucketId() {
-			return bucketId;
-		}
-
-		public String getStreamId() {
-			return streamId;
-		}
-
-		@Override
-		public String toString() {
-			final StringBuffer sb = new StringBuffer("HeadKey{");
-			sb.append("bucketId='").append(bucketId).append('\'');
-			sb.append(", streamId='").append(streamId).append('\'');
-			sb.append('}');
-			return sb.toString();
-		}
+	@Override
+	public void invalidate(String bucketId, String streamId) {
+		heads.remove(bucketId,streamId);
 	}
 
 }
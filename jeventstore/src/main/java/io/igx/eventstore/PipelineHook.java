@@ -40,8 +40,9 @@ public interface PipelineHook {
 	/**
 	 * Hooks into the commit pipeline prior to persisting the commit to durable storage.
 	 * @param attempt The attempt to be committed.
-	 * @return If processing should continue, returns true; otherwise returns false.
-	 * @throws java.util.ConcurrentModificationException
+	 * @return If processing should continue, returns true; otherwise returns false, in which case the attempt is
+	 * refused with a {@link io.igx.eventstore.exceptions.ConcurrencyException} without reaching storage.
+	 * @throws io.igx.eventstore.exceptions.ConcurrencyException if the attempt is known to conflict with a commit already persisted
 	 * @throws io.igx.eventstore.persistence.StorageException
 	 */
 	boolean preCommit(CommitAttempt attempt);
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * @author Vinicius Carvalho
+ * Remembers the last few commits of the most recently used streams by their identifier, so the retry of a commit
+ * that already succeeded is answered from memory instead of colliding with the unique index in storage.
+ */
+public class RecentCommits {
+
+	private final int streams;
+	private final int commitsPerStream;
+	private final Map<StreamKey,Commit[]> recent;
+
+	/**
+	 *
+	 * @param streams maximum number of streams remembered
+	 * @param commitsPerStream number of latest commits remembered for each stream
+	 */
+	public RecentCommits(int streams, int commitsPerStream) {
+		if(streams < 1 || commitsPerStream < 1){
+			throw new IllegalArgumentException("Number of streams and commits must be positive");
+		}
+		this.streams = streams;
+		this.commitsPerStream = commitsPerStream;
+		this.recent = new LinkedHashMap<StreamKey,Commit[]>(Math.min(streams, 64), 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<StreamKey, Commit[]> eldest) {
+				return size() > RecentCommits.this.streams;
+			}
+		};
+	}
+
+	/**
+	 *
+	 * @return the commit of the stream with that identifier, or null if it is not among the remembered ones
+	 */
+	public synchronized Commit get(String bucketId, String streamId, UUID guid) {
+		Commit[] commits = recent.get(new StreamKey(bucketId, streamId));
+		if(commits == null){
+			return null;
+		}
+		for (Commit commit : commits) {
+			if(commit != null && guid.equals(commit.getGuid())){
+				return commit;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remembers the commit, replacing the oldest one remembered for its stream.
+	 */
+	public synchronized void add(Commit commit) {
+		StreamKey key = new StreamKey(commit.getBucketId(), commit.getStreamId());
+		Commit[] commits = recent.get(key);
+		if(commits == null){
+			commits = new Commit[commitsPerStream];
+			recent.put(key, commits);
+		}
+		int slot = (int) (commit.getCommitSequence() % commitsPerStream);
+		commits[slot] = commit;
+	}
+
+	public synchronized void remove(String bucketId, String streamId) {
+		recent.remove(new StreamKey(bucketId, streamId));
+	}
+
+	/**
+	 * Forgets every stream of a bucket, or every stream at all if bucketId is null.
+	 */
+	public synchronized void removeBucket(String bucketId) {
+		if(bucketId == null){
+			recent.clear();
+			return;
+		}
+		recent.keySet().removeIf(key -> bucketId.equals(key.getBucketId()));
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Vinicius Carvalho
+ * How many times, and how far apart, a conflicting commit is retried. Backoff grows exponentially from the initial
+ * delay up to the maximum one, and each wait is drawn at random between half and all of it so that contending
+ * writers spread out instead of colliding again.
+ * A policy also records the outcome of the commits it governed, it can be shared between threads and streams.
+ */
+public class RetryPolicy {
+
+	private final int maxAttempts;
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+	private final AtomicLongArray attempts;
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder exhausted = new LongAdder();
+
+	public RetryPolicy() {
+		this(5, 10, 1000);
+	}
+
+	/**
+	 * @param maxAttempts The maximum number of times a commit is tried, the first one included.
+	 * @param initialBackoffMillis The wait before the first retry.
+	 * @param maxBackoffMillis The upper bound of any wait.
+	 */
+	public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+		if(maxAttempts < 1)
+			throw new IllegalArgumentException("A commit must be attempted at least once");
+		if(initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis)
+			throw new IllegalArgumentException("Backoff must be positive and the maximum not below the initial one");
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.attempts = new AtomicLongArray(maxAttempts + 1);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @param attempt The attempt that just failed, starting at 1.
+	 * @return the time to wait before the next attempt
+	 */
+	public long backoffMillis(int attempt) {
+		long backoff = initialBackoffMillis;
+		for (int i = 1; i < attempt && backoff < maxBackoffMillis; i++) {
+			backoff *= 2;
+		}
+		backoff = Math.min(backoff, maxBackoffMillis);
+		if(backoff == 0)
+			return 0;
+		return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+	}
+
+	/**
+	 * Records a commit that succeeded on the given attempt.
+	 */
+	public void recordSuccess(int attempt) {
+		attempts.incrementAndGet(Math.min(attempt, maxAttempts));
+		retries.add(attempt - 1);
+	}
+
+	/**
+	 * Records a commit given up after the given attempt, either because attempts ran out or the resolver refused it.
+	 */
+	public void recordFailure(int attempt) {
+		exhausted.increment();
+		retries.add(attempt - 1);
+	}
+
+	/**
+	 * @return the total number of retries, successful or not
+	 */
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	/**
+	 * @return the number of commits given up
+	 */
+	public long getExhausted() {
+		return exhausted.sum();
+	}
+
+	/**
+	 * @return for each number of attempts, at its index, how many commits succeeded after exactly that many
+	 */
+	public long[] getAttemptHistogram() {
+		long[] histogram = new long[attempts.length()];
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = attempts.get(i);
+		}
+		return histogram;
+	}
+}
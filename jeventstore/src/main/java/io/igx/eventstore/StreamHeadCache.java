@@ -0,0 +1,181 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.igx.eventstore.persistence.StreamHead;
+
+/**
+ * @author Vinicius Carvalho
+ * Bounded LRU of the head of each stream, built from its latest commit. Streams are spread over independently locked segments, each one an
+ * access ordered map evicting its least recently used head, so touching or evicting a head is O(1) and threads
+ * working on different streams rarely contend.
+ *
+ * The LRU order is kept per segment, not across the cache: each segment holds at most its share of the capacity, so a
+ * segment receiving more streams than its share evicts them while other segments still have room. With streams spread
+ * by hash this only matters when the capacity is close to the number of hot streams; size it with some headroom, or
+ * pass a concurrency of 1 for an exact LRU under a single lock.
+ */
+public class StreamHeadCache {
+
+	private static final int DEFAULT_CONCURRENCY = 16;
+
+	private final Segment[] segments;
+	private final int mask;
+
+	public StreamHeadCache(int capacity) {
+		this(capacity, DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 *
+	 * @param capacity maximum number of streams tracked, split evenly between the segments and rounded up to a
+	 * multiple of their number
+	 * @param concurrency expected number of threads updating the cache at the same time, rounded up to a power of two
+	 * no larger than the capacity; this is the number of segments
+	 */
+	public StreamHeadCache(int capacity, int concurrency) {
+		if(capacity < 1 || concurrency < 1){
+			throw new IllegalArgumentException("Capacity and concurrency must be positive");
+		}
+		int count = 1;
+		while(count < concurrency && (count << 1) <= capacity){
+			count <<= 1;
+		}
+		int segmentCapacity = (capacity + count - 1) / count;
+		this.segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment(segmentCapacity);
+		}
+		this.mask = count - 1;
+	}
+
+	/**
+	 *
+	 * @return the head tracked for the stream or null if it is not tracked
+	 */
+	public StreamHead get(String bucketId, String streamId) {
+		StreamKey key = new StreamKey(bucketId, streamId);
+		Segment segment = segmentFor(key);
+		synchronized (segment){
+			return segment.get(key);
+		}
+	}
+
+	/**
+	 * Tracks the commit as the head of its stream, unless a commit with a higher revision is already tracked.
+	 */
+	public void update(Commit committed) {
+		update(committed, false);
+	}
+
+	/**
+	 * Moves the head of a stream forward to the commit, only if the stream is already tracked. Meant for commits read
+	 * from storage, which are not necessarily the latest of their stream.
+	 */
+	public void advance(Commit committed) {
+		update(committed, true);
+	}
+
+	public void remove(String bucketId, String streamId) {
+		StreamKey key = new StreamKey(bucketId, streamId);
+		Segment segment = segmentFor(key);
+		synchronized (segment){
+			segment.remove(key);
+		}
+	}
+
+	/**
+	 * Stops tracking every stream of a bucket, or every stream at all if bucketId is null.
+	 */
+	public void removeBucket(String bucketId) {
+		for (Segment segment : segments) {
+			synchronized (segment){
+				if(bucketId == null){
+					segment.clear();
+				}
+				else {
+					segment.keySet().removeIf(key -> bucketId.equals(key.getBucketId()));
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		removeBucket(null);
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment){
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	private void update(Commit committed, boolean trackedOnly) {
+		StreamKey key = new StreamKey(committed.getBucketId(), committed.getStreamId());
+		Segment segment = segmentFor(key);
+		synchronized (segment){
+			StreamHead head = segment.get(key);
+			if(head == null && trackedOnly){
+				return;
+			}
+			if(head == null || head.getHeadRevision() <= committed.getStreamRevision()){
+				segment.put(key, new StreamHead(committed.getBucketId(),
+						committed.getStreamId(),
+						committed.getStreamRevision().intValue(),
+						committed.getCommitSequence(),
+						committed.getCheckpointToken(),
+						null));
+			}
+		}
+	}
+
+	private Segment segmentFor(StreamKey key) {
+		int hash = key.hashCode();
+		return segments[(hash ^ (hash >>> 16)) & mask];
+	}
+
+	private static final class Segment extends LinkedHashMap<StreamKey,StreamHead> {
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(Math.min(capacity, 64), 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<StreamKey, StreamHead> eldest) {
+			return size() > capacity;
+		}
+	}
+}
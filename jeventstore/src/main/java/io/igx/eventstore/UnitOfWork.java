@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import io.igx.eventstore.exceptions.ConcurrencyException;
+import io.igx.eventstore.exceptions.DuplicateCommitException;
+
+/**
+ * @author Vinicius Carvalho
+ * Collects the uncommitted changes of several streams, e.g. the two accounts of a transfer, and commits them in one
+ * transaction with a single batched INSERT. If any stream conflicts nothing is persisted: the conflicting stream is
+ * refreshed and named by the {@link ConcurrencyException}, the others keep their changes.
+ * A unit of work is not thread safe and is meant to be used once.
+ */
+public class UnitOfWork {
+
+	private final OptmisticEventStore eventStore;
+	private final Map<StreamKey,Enlisted> streams = new LinkedHashMap<>();
+
+	UnitOfWork(OptmisticEventStore eventStore) {
+		this.eventStore = eventStore;
+	}
+
+	/**
+	 * Enlists the changes of the stream, they are read when the unit of work commits.
+	 * @param stream A stream opened by the store that started this unit of work.
+	 * @param guid The value which uniquely identifies the commit of this stream.
+	 * @return this unit of work
+	 */
+	public UnitOfWork add(EventStream stream, UUID guid) {
+		if(!(stream instanceof OptimisticEventStream)){
+			throw new IllegalArgumentException("Stream " + stream.getStreamId() + " was not opened by an optimistic event store");
+		}
+		StreamKey key = new StreamKey(stream.getBucketId(), stream.getStreamId());
+		if(streams.containsKey(key)){
+			throw new IllegalArgumentException("Stream " + stream.getStreamId() + " is already part of this unit of work");
+		}
+		streams.put(key, new Enlisted((OptimisticEventStream) stream, guid));
+		return this;
+	}
+
+	/**
+	 * Commits the changes of every enlisted stream atomically. Streams without changes are skipped.
+	 * @return the commits, in the order the streams were enlisted
+	 * @throws ConcurrencyException if any of the streams conflicts, nothing is persisted then
+	 * @throws DuplicateCommitException if one of the commits has already been persisted, e.g. a retried unit of work
+	 */
+	public List<Commit> commit() {
+		List<Enlisted> pending = new ArrayList<>(streams.size());
+		List<CommitAttempt> attempts = new ArrayList<>(streams.size());
+		for (Enlisted enlisted : streams.values()) {
+			if(enlisted.stream.getUncommitedEvents().isEmpty())
+				continue;
+			enlisted.attempt = enlisted.stream.buildCommitAttempt(enlisted.guid);
+			pending.add(enlisted);
+			attempts.add(enlisted.attempt);
+		}
+		if(attempts.isEmpty())
+			return new ArrayList<>();
+		List<Commit> commits;
+		try {
+			commits = eventStore.commitAll(attempts);
+		}
+		catch (ConcurrencyException e) {
+			for (Enlisted enlisted : pending) {
+				if(e.getStreamId() == null || (enlisted.stream.getStreamId().equals(e.getStreamId()) && enlisted.stream.getBucketId().equals(e.getBucketId()))){
+					enlisted.stream.refresh();
+				}
+			}
+			throw e;
+		}
+		for (int i = 0; i < commits.size(); i++) {
+			Enlisted enlisted = pending.get(i);
+			enlisted.stream.onCommitted(enlisted.attempt, commits.get(i));
+		}
+		streams.clear();
+		return commits;
+	}
+
+	private static class Enlisted {
+		final OptimisticEventStream stream;
+		final UUID guid;
+		CommitAttempt attempt;
+
+		Enlisted(OptimisticEventStream stream, UUID guid) {
+			this.stream = stream;
+			this.guid = guid;
+		}
+	}
+}
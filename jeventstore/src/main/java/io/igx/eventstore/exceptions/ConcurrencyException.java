@@ -28,4 +28,50 @@ package io.igx.eventstore.exceptions;
  * @author Vinicius Carvalho
  */
 public class ConcurrencyException extends RuntimeException {
+
+	private final String bucketId;
+	private final String streamId;
+
+	public ConcurrencyException() {
+		this(null, null, null);
+	}
+
+	public ConcurrencyException(String message) {
+		this(null, null, message);
+	}
+
+	/**
+	 * @param bucketId The bucket of the conflicting stream.
+	 * @param streamId The stream where the conflict happened.
+	 */
+	public ConcurrencyException(String bucketId, String streamId, String message) {
+		super(message);
+		this.bucketId = bucketId;
+		this.streamId = streamId;
+	}
+
+	/**
+	 * @param cause The storage error the conflict was detected from.
+	 */
+	public ConcurrencyException(String bucketId, String streamId, String message, Throwable cause) {
+		super(message, cause);
+		this.bucketId = bucketId;
+		this.streamId = streamId;
+	}
+
+	/**
+	 *
+	 * @return the bucket of the conflicting stream, null if unknown
+	 */
+	public String getBucketId() {
+		return bucketId;
+	}
+
+	/**
+	 *
+	 * @return the stream where the conflict happened, null if unknown
+	 */
+	public String getStreamId() {
+		return streamId;
+	}
 }
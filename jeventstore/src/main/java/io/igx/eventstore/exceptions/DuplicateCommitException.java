@@ -24,8 +24,31 @@
 
 package io.igx.eventstore.exceptions;
 
+import io.igx.eventstore.Commit;
+
 /**
  * @author Vinicius Carvalho
+ * Thrown when an attempt reuses the identifier of a commit already persisted on its stream, usually a retry of a
+ * commit that succeeded. The original commit is carried along when it is known.
  */
 public class DuplicateCommitException extends RuntimeException {
+
+	private final Commit original;
+
+	public DuplicateCommitException() {
+		this.original = null;
+	}
+
+	public DuplicateCommitException(Commit original) {
+		super("Commit " + original.getGuid() + " has already been persisted on stream '" + original.getStreamId() + "' at checkpoint " + original.getCheckpointToken());
+		this.original = original;
+	}
+
+	/**
+	 *
+	 * @return the commit persisted with the same identifier, null if unknown
+	 */
+	public Commit getOriginal() {
+		return original;
+	}
 }
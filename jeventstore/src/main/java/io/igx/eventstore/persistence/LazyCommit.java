@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.serializers.Serializer;
+
+/**
+ * @author Vinicius Carvalho
+ * A commit read from storage whose headers and events are kept serialized until first accessed. Consumers that only
+ * look at identifiers, sequences or checkpoints never pay for deserialization. Each part is deserialized at most once,
+ * after which its raw bytes are released. Safe to share between threads.
+ */
+public class LazyCommit implements Commit {
+
+	private final String streamId;
+	private final String bucketId;
+	private final Long streamRevision;
+	private final UUID guid;
+	private final Long commitSequence;
+	private final Long commitStamp;
+	private final String checkpointToken;
+
+	private final Serializer serializer;
+	private final int serializedSize;
+	private final Object headersLock = new Object();
+	private final Object eventsLock = new Object();
+	private byte[] rawHeaders;
+	private byte[] rawEvents;
+	private volatile Map<String,Object> headers;
+	private volatile Collection<EventMessage> events;
+
+	public LazyCommit(String streamId, String bucketId, Long streamRevision, UUID guid, Long commitSequence, Long commitStamp, String checkpointToken, byte[] rawHeaders, byte[] rawEvents, Serializer serializer) {
+		this.streamId = streamId;
+		this.bucketId = bucketId;
+		this.streamRevision = streamRevision;
+		this.guid = guid;
+		this.commitSequence = commitSequence;
+		this.commitStamp = commitStamp;
+		this.checkpointToken = checkpointToken;
+		this.rawHeaders = rawHeaders;
+		this.rawEvents = rawEvents;
+		this.serializedSize = (rawHeaders == null ? 0 : rawHeaders.length) + (rawEvents == null ? 0 : rawEvents.length);
+		this.serializer = serializer;
+	}
+
+	public String getStreamId() {
+		return streamId;
+	}
+
+	public String getBucketId() {
+		return bucketId;
+	}
+
+	public Long getStreamRevision() {
+		return streamRevision;
+	}
+
+	public UUID getGuid() {
+		return guid;
+	}
+
+	public Long getCommitSequence() {
+		return commitSequence;
+	}
+
+	public Long getCommitStamp() {
+		return commitStamp;
+	}
+
+	public String getCheckpointToken() {
+		return checkpointToken;
+	}
+
+	/**
+	 *
+	 * @return size, in bytes, of the headers and events as read from storage
+	 */
+	public int getSerializedSize() {
+		return serializedSize;
+	}
+
+	/**
+	 * Deserializes the headers and events now, on the calling thread, instead of on first access.
+	 */
+	public void deserialize() {
+		getHeaders();
+		getEvents();
+	}
+
+	@SuppressWarnings("unchecked")
+	public Map<String, Object> getHeaders() {
+		Map<String,Object> result = headers;
+		if(result == null){
+			synchronized (headersLock){
+				result = headers;
+				if(result == null){
+					result = (rawHeaders == null) ? Collections.emptyMap() : serializer.deserializeMap(rawHeaders);
+					headers = result;
+					rawHeaders = null;
+				}
+			}
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	public Collection<EventMessage> getEvents() {
+		Collection<EventMessage> result = events;
+		if(result == null){
+			synchronized (eventsLock){
+				result = events;
+				if(result == null){
+					result = (rawEvents == null) ? Collections.emptyList() : serializer.deserializeCollection(rawEvents, EventMessage.class);
+					events = result;
+					rawEvents = null;
+				}
+			}
+		}
+		return result;
+	}
+}
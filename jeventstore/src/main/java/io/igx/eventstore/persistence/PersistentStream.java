@@ -27,10 +27,15 @@ package io.igx.eventstore.persistence;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 import io.igx.eventstore.Checkpoint;
 import io.igx.eventstore.Commit;
+import io.igx.eventstore.CommitAttempt;
 import io.igx.eventstore.CommitEvent;
+import io.igx.eventstore.EventMessage;
 import io.igx.eventstore.SnapshotAccessor;
 import reactor.core.publisher.Flux;
 
@@ -69,6 +74,18 @@ public interface PersistentStream extends CommitEvent, SnapshotAccessor{
 	 */
 	Flux<Commit> from(String bucketId, String checkpointToken);
 
+	/**
+	 * Gets all commits of a bucket after the specified checkpoint split into partitions by stream, so they can be
+	 * read and handled concurrently. All the commits of a stream belong to the same partition, in which they are sorted
+	 * by checkpoint; there is no order between commits of different partitions.
+	 * This method is not found in the .net version
+	 * @param bucketId The value which uniquely identifies bucket the streams belong to.
+	 * @param checkpointToken The checkpoint token. Use null to get from the beginning.
+	 * @param partitions The number of partitions.
+	 * @return a Flux per partition, the bucket being read once all of them have been subscribed
+	 */
+	List<Flux<Commit>> from(String bucketId, String checkpointToken, int partitions);
+
 	/**
 	 * Gets all commits on or after from the specified starting time and before the specified end time.
 	 * @param bucketId The value which uniquely identifies bucket the stream belongs to.
@@ -81,6 +98,20 @@ public interface PersistentStream extends CommitEvent, SnapshotAccessor{
 	 */
 	Flux<Commit> from(String bucketId, LocalDateTime start, LocalDateTime stop);
 
+	/**
+	 * Gets the headers of the commits of a stream that overlap the revisions specified, sorted in ascending order,
+	 * without reading their events.
+	 * This method is not found in the .net version
+	 * @param bucketId The value which uniquely identifies bucket the stream belongs to.
+	 * @param streamId The stream from which the headers will be read.
+	 * @param minRevision The minimum revision of the stream to be read.
+	 * @param maxRevision The maximum revision of the stream to be read.
+	 * @throws StorageException
+	 * @throws StorageUnavailableException
+	 * @return a Flux with the headers of each commit
+	 */
+	Flux<Map<String,Object>> getCommitHeaders(String bucketId, String streamId, Long minRevision, Long maxRevision);
+
 	/**
 	 * Gets a checkpoint object that is comparable with other checkpoints from this storage engine.
 	 * @param checkpointToken The checkpoint token
@@ -150,4 +181,61 @@ public interface PersistentStream extends CommitEvent, SnapshotAccessor{
 	 */
 	Long getCurrentCommitSequence(String bucketId, String streamId, Long minRevision, Long maxRevision);
 
+	/**
+	 * Gets the head of a stream: its latest revision and commit sequence, the checkpoint of its latest commit and the
+	 * revision of its latest snapshot. Unlike {@link #getCurrentStreamRevision(String, String, Long, Long)} this does not
+	 * depend on the length of the stream.
+	 * This method is not found in the .net version
+	 * @param bucketId The value which uniquely identifies bucket the stream belongs to.
+	 * @param streamId The stream identifier.
+	 * @throws StorageException
+	 * @throws StorageUnavailableException
+	 * @return the head of the stream, or null if nothing has been committed to it.
+	 */
+	StreamHead getStreamHead(String bucketId, String streamId);
+
+	/**
+	 * Writes the attempts, usually on different streams, in a single transaction: either all of them are persisted or
+	 * none is.
+	 * This method is not found in the .net version
+	 * @param attempts The attempts to persist together.
+	 * @throws StorageException
+	 * @throws StorageUnavailableException
+	 * @throws io.igx.eventstore.exceptions.ConcurrencyException naming the conflicting stream when it can be told
+	 * @throws io.igx.eventstore.exceptions.DuplicateCommitException if one of the attempts has already been persisted
+	 * @return the commits, in the order of the attempts
+	 */
+	List<Commit> commitAll(List<CommitAttempt> attempts);
+
+	/**
+	 * Appends the events after the head of the stream in a single transaction: the head is read and locked, checked
+	 * against the expected revision, the attempt is built on top of it, handed to the pre-commit callback and persisted.
+	 * This method is not found in the .net version
+	 * @param bucketId The value which uniquely identifies bucket the stream belongs to.
+	 * @param streamId The stream the events are appended to.
+	 * @param expectedRevision The revision the stream must be at, or {@link io.igx.eventstore.EventStore#ANY_REVISION}.
+	 * @param guid The value which uniquely identifies the commit within the stream.
+	 * @param events The events to append.
+	 * @param headers The metadata of the commit.
+	 * @param preCommit Invoked with the attempt before it is written, throwing from it rolls the append back.
+	 * @throws StorageException
+	 * @throws StorageUnavailableException
+	 * @throws io.igx.eventstore.exceptions.ConcurrencyException if the stream is not at the expected revision
+	 * @throws io.igx.eventstore.exceptions.DuplicateCommitException if the commit has already been persisted
+	 * @return the persisted commit
+	 */
+	Commit append(String bucketId, String streamId, long expectedRevision, UUID guid, Collection<EventMessage> events, Map<String,Object> headers, Consumer<CommitAttempt> preCommit);
+
+	/**
+	 * Gets a commit of a stream by its identifier, used to tell the retry of a persisted commit from a conflicting one.
+	 * This method is not found in the .net version
+	 * @param bucketId The value which uniquely identifies bucket the stream belongs to.
+	 * @param streamId The stream identifier.
+	 * @param commitId The value which uniquely identifies the commit within the stream.
+	 * @throws StorageException
+	 * @throws StorageUnavailableException
+	 * @return the commit, or null if the stream has no commit with that identifier.
+	 */
+	Commit getCommit(String bucketId, String streamId, UUID commitId);
+
 }
@@ -28,4 +28,15 @@ package io.igx.eventstore.persistence;
  * @author Vinicius Carvalho
  */
 public class StorageException extends RuntimeException {
+
+	public StorageException() {
+	}
+
+	public StorageException(String message) {
+		super(message);
+	}
+
+	public StorageException(String message, Throwable cause) {
+		super(message, cause);
+	}
 }
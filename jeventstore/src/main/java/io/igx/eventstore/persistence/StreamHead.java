@@ -31,12 +31,28 @@ public class StreamHead {
 	private final String bucketId;
 	private final String streamId;
 	private final Integer headRevision;
+	private final Long headCommitSequence;
+	private final String checkpointToken;
 	private final Integer snapShotRevision;
 
 	public StreamHead(String bucketId, String streamId, Integer headRevision, Integer snapShotRevision) {
+		this(bucketId, streamId, headRevision, null, null, snapShotRevision);
+	}
+
+	/**
+	 * @param bucketId The bucket the stream belongs to.
+	 * @param streamId The stream identifier.
+	 * @param headRevision The revision of the most recent event in the stream.
+	 * @param headCommitSequence The sequence of the most recent commit in the stream.
+	 * @param checkpointToken The checkpoint of the most recent commit in the stream.
+	 * @param snapShotRevision The revision of the most recent snapshot of the stream, 0 when there is none.
+	 */
+	public StreamHead(String bucketId, String streamId, Integer headRevision, Long headCommitSequence, String checkpointToken, Integer snapShotRevision) {
 		this.bucketId = bucketId;
 		this.streamId = streamId;
 		this.headRevision = headRevision;
+		this.headCommitSequence = headCommitSequence;
+		this.checkpointToken = checkpointToken;
 		this.snapShotRevision = snapShotRevision;
 	}
 
@@ -52,6 +68,14 @@ public class StreamHead {
 		return headRevision;
 	}
 
+	public Long getHeadCommitSequence() {
+		return headCommitSequence;
+	}
+
+	public String getCheckpointToken() {
+		return checkpointToken;
+	}
+
 	public Integer getSnapShotRevision() {
 		return snapShotRevision;
 	}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.serializers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @author Vinicius Carvalho
+ * Maps the type names written next to each event to their classes and back. Event classes can be registered under a
+ * short alias, which is written instead of the fully qualified class name. Names that were never registered are
+ * treated as class names, loaded once and cached, so replay never goes through reflective lookups per event.
+ */
+public class EventTypeRegistry {
+
+	private final ConcurrentMap<String,Class<?>> types = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Class<?>,String> aliases = new ConcurrentHashMap<>();
+	private final ClassLoader classLoader;
+
+	public EventTypeRegistry() {
+		this(EventTypeRegistry.class.getClassLoader());
+	}
+
+	public EventTypeRegistry(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * Registers an alias for an event class. Events written afterwards carry the alias, events written before keep
+	 * resolving through their class name.
+	 * @throws IllegalArgumentException if the alias or the class is already registered with a different counterpart
+	 */
+	public synchronized EventTypeRegistry register(String alias, Class<?> type) {
+		Class<?> registeredType = types.get(alias);
+		if(registeredType != null && registeredType != type){
+			throw new IllegalArgumentException("Alias " + alias + " is already registered for " + registeredType.getName());
+		}
+		String registeredAlias = aliases.get(type);
+		if(registeredAlias != null && !registeredAlias.equals(alias)){
+			throw new IllegalArgumentException(type.getName() + " is already registered as " + registeredAlias);
+		}
+		types.put(alias, type);
+		aliases.put(type, alias);
+		return this;
+	}
+
+	/**
+	 * Registers an alias for a class given by name, convenient when aliases come from configuration.
+	 */
+	public EventTypeRegistry register(String alias, String className) {
+		try {
+			return register(alias, Class.forName(className, true, classLoader));
+		}
+		catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("Unknown event class " + className + " for alias " + alias, e);
+		}
+	}
+
+	/**
+	 *
+	 * @return the name written for events of this class, its alias if one is registered or its class name otherwise
+	 */
+	public String typeName(Class<?> type) {
+		String alias = aliases.get(type);
+		return (alias != null) ? alias : type.getName();
+	}
+
+	/**
+	 *
+	 * @return the class for an alias or class name
+	 * @throws ClassNotFoundException if the name is neither a registered alias nor a loadable class
+	 */
+	public Class<?> resolve(String typeName) throws ClassNotFoundException {
+		Class<?> type = types.get(typeName);
+		if(type == null){
+			type = Class.forName(typeName, true, classLoader);
+			Class<?> existing = types.putIfAbsent(typeName, type);
+			if(existing != null){
+				type = existing;
+			}
+		}
+		return type;
+	}
+}
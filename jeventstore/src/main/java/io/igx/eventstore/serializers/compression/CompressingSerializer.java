@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.serializers.compression;
+
+import java.util.List;
+import java.util.Map;
+
+import io.igx.eventstore.serializers.Serializer;
+
+/**
+ * @author Vinicius Carvalho
+ * Compresses what another serializer writes once it reaches a size threshold. Compressed blobs start with a zero
+ * byte, followed by the algorithm id and the original length as a 4 byte big endian int. Neither JSON nor Smile can
+ * start with a zero byte, so blobs written before compression was enabled are read unchanged, as are blobs below the
+ * threshold or that did not shrink.
+ */
+public class CompressingSerializer<T> implements Serializer<T> {
+
+	static final byte MARKER = 0;
+	static final int HEADER_LENGTH = 6;
+
+	/**
+	 * No supported algorithm expands its input more than this, deflate's limit being about 1032 to 1.
+	 */
+	static final int MAX_RATIO = 1100;
+
+	private final Serializer<T> delegate;
+	private final Compression compression;
+	private final int threshold;
+	private final CompressionMetrics metrics;
+
+	public CompressingSerializer(Serializer<T> delegate, Compression compression, int threshold) {
+		this(delegate, compression, threshold, new CompressionMetrics());
+	}
+
+	/**
+	 *
+	 * @param delegate the serializer whose output is compressed, it must never write a leading zero byte
+	 * @param compression the algorithm used for new blobs, {@link Compression#NONE} only decompresses
+	 * @param threshold minimum size, in bytes, of a blob worth compressing
+	 */
+	public CompressingSerializer(Serializer<T> delegate, Compression compression, int threshold, CompressionMetrics metrics) {
+		this.delegate = delegate;
+		this.compression = compression;
+		this.threshold = threshold;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+		return delegate.deserialize(decompress(bytes), clazz);
+	}
+
+	@Override
+	public List<T> deserializeCollection(byte[] bytes, Class<T> clazz) {
+		return delegate.deserializeCollection(decompress(bytes), clazz);
+	}
+
+	@Override
+	public Map<String, Object> deserializeMap(byte[] bytes) {
+		return delegate.deserializeMap(decompress(bytes));
+	}
+
+	@Override
+	public byte[] serialize(T payload) {
+		return compress(delegate.serialize(payload));
+	}
+
+	public CompressionMetrics getMetrics() {
+		return metrics;
+	}
+
+	byte[] compress(byte[] bytes) {
+		if(bytes == null || !compression.compresses() || bytes.length < threshold){
+			return bytes;
+		}
+		long start = System.nanoTime();
+		byte[] compressed = compression.compress(bytes, HEADER_LENGTH);
+		if(compressed.length >= bytes.length){
+			metrics.recordStored(System.nanoTime() - start);
+			return bytes;
+		}
+		compressed[0] = MARKER;
+		compressed[1] = (byte) compression.getId();
+		compressed[2] = (byte) (bytes.length >>> 24);
+		compressed[3] = (byte) (bytes.length >>> 16);
+		compressed[4] = (byte) (bytes.length >>> 8);
+		compressed[5] = (byte) bytes.length;
+		metrics.recordCompression(bytes.length, compressed.length, System.nanoTime() - start);
+		return compressed;
+	}
+
+	byte[] decompress(byte[] bytes) {
+		if(bytes == null || bytes.length < HEADER_LENGTH || bytes[0] != MARKER){
+			return bytes;
+		}
+		long start = System.nanoTime();
+		int length = ((bytes[2] & 0xFF) << 24) | ((bytes[3] & 0xFF) << 16) | ((bytes[4] & 0xFF) << 8) | (bytes[5] & 0xFF);
+		long maxLength = Math.max(1L, bytes.length - HEADER_LENGTH) * MAX_RATIO;
+		if(length < 0 || length > maxLength){
+			throw new IllegalStateException("Corrupted compressed blob, header announces " + length + " bytes for " + (bytes.length - HEADER_LENGTH) + " compressed bytes");
+		}
+		Compression compression;
+		try {
+			compression = Compression.valueOf(bytes[1]);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalStateException("Corrupted compressed blob", e);
+		}
+		byte[] target = new byte[length];
+		compression.decompress(bytes, HEADER_LENGTH, target);
+		metrics.recordDecompression(System.nanoTime() - start);
+		return target;
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.serializers.compression;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * @author Vinicius Carvalho
+ * Compression algorithms available to {@link CompressingSerializer}. The id is written in the header of every
+ * compressed blob, so ids must never be reused.
+ */
+public enum Compression {
+
+	/**
+	 * Never compresses. Blobs written compressed with another algorithm are still read.
+	 */
+	NONE(0, null),
+
+	/**
+	 * Fast compression and very fast decompression, moderate ratio.
+	 */
+	LZ4(1, new Codec() {
+		@Override
+		public byte[] compress(byte[] source, int reserved) {
+			LZ4Compressor compressor = Lz4.FACTORY.fastCompressor();
+			byte[] target = Scratch.buffer(reserved + compressor.maxCompressedLength(source.length));
+			int length = compressor.compress(source, 0, source.length, target, reserved, target.length - reserved);
+			return Arrays.copyOf(target, reserved + length);
+		}
+
+		@Override
+		public void decompress(byte[] source, int offset, byte[] target) {
+			LZ4FastDecompressor decompressor = Lz4.FACTORY.fastDecompressor();
+			decompressor.decompress(source, offset, target, 0, target.length);
+		}
+	}),
+
+	/**
+	 * Better ratio than {@link #LZ4} at a higher CPU cost, bundled with the JDK.
+	 */
+	DEFLATE(2, new Codec() {
+		@Override
+		public byte[] compress(byte[] source, int reserved) {
+			Deflater deflater = Scratch.DEFLATER.get();
+			try {
+				deflater.setInput(source);
+				deflater.finish();
+				byte[] target = Scratch.buffer(reserved + source.length / 2 + 64);
+				int length = reserved;
+				while(!deflater.finished()){
+					if(length == target.length){
+						target = Scratch.grow(target);
+					}
+					length += deflater.deflate(target, length, target.length - length);
+				}
+				return Arrays.copyOf(target, length);
+			}
+			finally {
+				deflater.reset();
+			}
+		}
+
+		@Override
+		public void decompress(byte[] source, int offset, byte[] target) {
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(source, offset, source.length - offset);
+				int length = inflater.inflate(target);
+				if(length != target.length || !inflater.finished()){
+					throw new IllegalStateException("Corrupted deflate blob, expected " + target.length + " bytes but got " + length);
+				}
+			}
+			catch (DataFormatException e) {
+				throw new IllegalStateException("Corrupted deflate blob", e);
+			}
+			finally {
+				inflater.end();
+			}
+		}
+	});
+
+	private final int id;
+	private final Codec codec;
+
+	Compression(int id, Codec codec) {
+		this.id = id;
+		this.codec = codec;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 *
+	 * @return false for {@link #NONE}, which never writes compressed blobs
+	 */
+	boolean compresses() {
+		return codec != null;
+	}
+
+	/**
+	 *
+	 * @param reserved number of leading bytes to leave free for the caller's header
+	 * @return the compressed bytes, preceded by the reserved bytes
+	 * @throws IllegalStateException for {@link #NONE}
+	 */
+	byte[] compress(byte[] source, int reserved) {
+		if(codec == null)
+			throw new IllegalStateException(name() + " does not compress");
+		return codec.compress(source, reserved);
+	}
+
+	/**
+	 * Decompresses source, starting at offset, filling target entirely. A {@link #NONE} blob holds the bytes as they
+	 * are, they are copied.
+	 */
+	void decompress(byte[] source, int offset, byte[] target) {
+		if(codec == null){
+			if(source.length - offset != target.length)
+				throw new IllegalStateException("Corrupted uncompressed blob, expected " + target.length + " bytes but got " + (source.length - offset));
+			System.arraycopy(source, offset, target, 0, target.length);
+			return;
+		}
+		codec.decompress(source, offset, target);
+	}
+
+	static Compression valueOf(int id) {
+		for (Compression compression : values()) {
+			if(compression.id == id){
+				return compression;
+			}
+		}
+		throw new IllegalArgumentException("Unknown compression " + id);
+	}
+
+	private interface Codec {
+
+		byte[] compress(byte[] source, int reserved);
+
+		void decompress(byte[] source, int offset, byte[] target);
+	}
+
+	/**
+	 * Per thread buffers the codecs compress into, only the compressed blob being copied out of them. Buffers larger
+	 * than {@link #MAX_LENGTH} are not kept, so a single large blob does not pin its memory to the thread.
+	 */
+	private static class Scratch {
+		static final int MAX_LENGTH = 1 << 20;
+		static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<>();
+		static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION));
+
+		static byte[] buffer(int length) {
+			byte[] buffer = BUFFER.get();
+			if(buffer == null || buffer.length < length){
+				buffer = keep(new byte[length]);
+			}
+			return buffer;
+		}
+
+		static byte[] grow(byte[] buffer) {
+			return keep(Arrays.copyOf(buffer, buffer.length * 2));
+		}
+
+		private static byte[] keep(byte[] buffer) {
+			if(buffer.length <= MAX_LENGTH){
+				BUFFER.set(buffer);
+			}
+			return buffer;
+		}
+	}
+
+	/**
+	 * Loaded on first use only, so the LZ4 library is not required unless LZ4 is in use.
+	 */
+	private static class Lz4 {
+		static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.serializers.compression;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Vinicius Carvalho
+ * Counters of the work done by {@link CompressingSerializer}, to weigh bytes saved against CPU time spent. One
+ * instance can be shared by several serializers.
+ */
+public class CompressionMetrics {
+
+	private final LongAdder compressed = new LongAdder();
+	private final LongAdder stored = new LongAdder();
+	private final LongAdder bytesIn = new LongAdder();
+	private final LongAdder bytesOut = new LongAdder();
+	private final LongAdder compressionNanos = new LongAdder();
+	private final LongAdder decompressed = new LongAdder();
+	private final LongAdder decompressionNanos = new LongAdder();
+
+	void recordCompression(int originalLength, int compressedLength, long nanos) {
+		compressed.increment();
+		bytesIn.add(originalLength);
+		bytesOut.add(compressedLength);
+		compressionNanos.add(nanos);
+	}
+
+	void recordStored(long nanos) {
+		stored.increment();
+		compressionNanos.add(nanos);
+	}
+
+	void recordDecompression(long nanos) {
+		decompressed.increment();
+		decompressionNanos.add(nanos);
+	}
+
+	/**
+	 *
+	 * @return number of blobs written compressed
+	 */
+	public long getCompressed() {
+		return compressed.sum();
+	}
+
+	/**
+	 *
+	 * @return number of blobs compressed but written as is because compression did not make them smaller
+	 */
+	public long getStoredUncompressed() {
+		return stored.sum();
+	}
+
+	/**
+	 *
+	 * @return bytes saved on blobs written compressed
+	 */
+	public long getBytesSaved() {
+		return bytesIn.sum() - bytesOut.sum();
+	}
+
+	/**
+	 *
+	 * @return compressed size over original size of the blobs written compressed, 1 when nothing was compressed
+	 */
+	public double getCompressionRatio() {
+		long in = bytesIn.sum();
+		return (in == 0) ? 1.0 : (double) bytesOut.sum() / in;
+	}
+
+	/**
+	 *
+	 * @return time spent compressing, including attempts that were discarded
+	 */
+	public long getCompressionNanos() {
+		return compressionNanos.sum();
+	}
+
+	public long getDecompressed() {
+		return decompressed.sum();
+	}
+
+	public long getDecompressionNanos() {
+		return decompressionNanos.sum();
+	}
+}
@@ -22,45 +22,127 @@
  * SOFTWARE.
  */
 
+
 package io.igx.eventstore.serializers.json;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.serializers.EventTypeRegistry;
 
 /**
  * @author Vinicius Carvalho
+ * Reads an {@link EventMessage} in a single pass over the parser. The type name is resolved through an
+ * {@link EventTypeRegistry} and the body is bound straight from the stream with a cached deserializer. Only when the
+ * body shows up before the type name is it buffered until the type is known.
  */
 public class EventMessageJacksonDeSerializer extends JsonDeserializer<EventMessage>{
 
-	private ObjectMapper mapper;
+	private final EventTypeRegistry typeRegistry;
+	private final ConcurrentMap<Class<?>,JsonDeserializer<Object>> bodyDeserializers = new ConcurrentHashMap<>();
+	private volatile JsonDeserializer<Object> headersDeserializer;
+
+	public EventMessageJacksonDeSerializer(EventTypeRegistry typeRegistry) {
+		this.typeRegistry = typeRegistry;
+	}
 
+	/**
+	 * @deprecated the mapper is not used anymore, use {@link #EventMessageJacksonDeSerializer(EventTypeRegistry)}
+	 */
+	@Deprecated
 	public EventMessageJacksonDeSerializer(ObjectMapper mapper) {
-		this.mapper = mapper;
+		this(new EventTypeRegistry());
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public EventMessage deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException, JsonProcessingException {
-		JsonNode node = jsonParser.readValueAsTree();
-		Map headers = mapper.treeToValue(node.get("headers"), Map.class);
-		EventMessage eventMessage = null;
-		try {
-			Class clazz = Class.forName(node.get("@type").asText());
-			Object payload = mapper.treeToValue(node.get("body"),clazz);
-			eventMessage = new EventMessage(headers,payload);
+		Class<?> type = null;
+		Object body = null;
+		TokenBuffer bufferedBody = null;
+		Map<String,Object> headers = null;
+
+		JsonToken token = jsonParser.getCurrentToken();
+		if(token == JsonToken.START_OBJECT){
+			token = jsonParser.nextToken();
+		}
+		for(; token == JsonToken.FIELD_NAME; token = jsonParser.nextToken()){
+			String field = jsonParser.getCurrentName();
+			jsonParser.nextToken();
+			if("@type".equals(field)){
+				type = resolve(jsonParser.getText());
+			}
+			else if("body".equals(field)){
+				if(type != null){
+					body = readBody(jsonParser, deserializationContext, type);
+				}
+				else {
+					bufferedBody = new TokenBuffer(jsonParser);
+					bufferedBody.copyCurrentStructure(jsonParser);
+				}
+			}
+			else if("headers".equals(field)){
+				if(jsonParser.getCurrentToken() != JsonToken.VALUE_NULL){
+					headers = (Map<String,Object>) headersDeserializer(deserializationContext).deserialize(jsonParser, deserializationContext);
+				}
+			}
+			else {
+				jsonParser.skipChildren();
+			}
+		}
+		if(type == null){
+			throw new RuntimeJsonMappingException("Event message without @type");
+		}
+		if(bufferedBody != null){
+			JsonParser bodyParser = bufferedBody.asParser(jsonParser.getCodec());
+			bodyParser.nextToken();
+			body = readBody(bodyParser, deserializationContext, type);
+		}
+		return new EventMessage((headers != null) ? headers : new HashMap<String,Object>(), body);
+	}
 
+	private Class<?> resolve(String typeName) {
+		try {
+			return typeRegistry.resolve(typeName);
 		}
 		catch (ClassNotFoundException e) {
 			throw new RuntimeJsonMappingException(e.getMessage());
 		}
-		return eventMessage;
+	}
+
+	private Object readBody(JsonParser jsonParser, DeserializationContext deserializationContext, Class<?> type) throws IOException {
+		if(jsonParser.getCurrentToken() == JsonToken.VALUE_NULL){
+			return null;
+		}
+		JsonDeserializer<Object> deserializer = bodyDeserializers.get(type);
+		if(deserializer == null){
+			JavaType javaType = deserializationContext.getTypeFactory().constructType(type);
+			deserializer = deserializationContext.findRootValueDeserializer(javaType);
+			bodyDeserializers.putIfAbsent(type, deserializer);
+		}
+		return deserializer.deserialize(jsonParser, deserializationContext);
+	}
+
+	private JsonDeserializer<Object> headersDeserializer(DeserializationContext deserializationContext) throws IOException {
+		JsonDeserializer<Object> deserializer = headersDeserializer;
+		if(deserializer == null){
+			JavaType mapType = deserializationContext.getTypeFactory().constructMapType(HashMap.class, String.class, Object.class);
+			deserializer = deserializationContext.findRootValueDeserializer(mapType);
+			headersDeserializer = deserializer;
+		}
+		return deserializer;
 	}
 }
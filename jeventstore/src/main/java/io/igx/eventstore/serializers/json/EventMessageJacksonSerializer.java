@@ -31,15 +31,28 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.serializers.EventTypeRegistry;
 
 /**
  * @author Vinicius Carvalho
+ * Writes the type name first so {@link EventMessageJacksonDeSerializer} can bind the body without buffering it.
  */
 public class EventMessageJacksonSerializer extends JsonSerializer<EventMessage> {
+
+	private final EventTypeRegistry typeRegistry;
+
+	public EventMessageJacksonSerializer() {
+		this(new EventTypeRegistry());
+	}
+
+	public EventMessageJacksonSerializer(EventTypeRegistry typeRegistry) {
+		this.typeRegistry = typeRegistry;
+	}
+
 	@Override
 	public void serialize(EventMessage eventMessage, JsonGenerator jg, SerializerProvider serializerProvider) throws IOException, JsonProcessingException {
 		jg.writeStartObject();
-		jg.writeStringField("@type",eventMessage.getBody().getClass().getName());
+		jg.writeStringField("@type",typeRegistry.typeName(eventMessage.getBody().getClass()));
 		jg.writeObjectField("body",eventMessage.getBody());
 		jg.writeObjectField("headers",eventMessage.getHeaders());
 		jg.writeEndObject();
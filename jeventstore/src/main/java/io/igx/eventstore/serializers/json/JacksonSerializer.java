@@ -30,11 +30,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.serializers.EventTypeRegistry;
 import io.igx.eventstore.serializers.Serializer;
 
 /**
@@ -45,11 +47,23 @@ public class JacksonSerializer<T> implements Serializer<T> {
 	private ObjectMapper mapper;
 
 	public JacksonSerializer(){
-		ObjectMapper mapper = new ObjectMapper();
+		this(new EventTypeRegistry());
+	}
+
+	public JacksonSerializer(EventTypeRegistry typeRegistry){
+		this(new JsonFactory(), typeRegistry);
+	}
+
+	/**
+	 *
+	 * @param factory the Jackson data format to write, JSON or any of the binary formats sharing its data model
+	 */
+	public JacksonSerializer(JsonFactory factory, EventTypeRegistry typeRegistry){
+		ObjectMapper mapper = new ObjectMapper(factory);
 		SimpleModule module = new SimpleModule();
-		module.addSerializer(EventMessage.class,new EventMessageJacksonSerializer());
+		module.addSerializer(EventMessage.class,new EventMessageJacksonSerializer(typeRegistry));
 
-		module.addDeserializer(EventMessage.class,new EventMessageJacksonDeSerializer(mapper));
+		module.addDeserializer(EventMessage.class,new EventMessageJacksonDeSerializer(typeRegistry));
 		mapper.registerModule(module);
 		this.mapper = mapper;
 	}
@@ -0,0 +1,48 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.serializers.smile;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import io.igx.eventstore.serializers.EventTypeRegistry;
+import io.igx.eventstore.serializers.json.JacksonSerializer;
+
+/**
+ * @author Vinicius Carvalho
+ * Writes payloads as Smile, the binary encoding of the JSON data model. Field names and type names repeated across
+ * events are back-referenced instead of written out again, which makes payloads smaller and cheaper to parse than
+ * their JSON counterpart. Events are bound exactly as with {@link JacksonSerializer}.
+ */
+public class SmileSerializer<T> extends JacksonSerializer<T> {
+
+	public SmileSerializer() {
+		this(new EventTypeRegistry());
+	}
+
+	public SmileSerializer(EventTypeRegistry typeRegistry) {
+		super(new SmileFactory().configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true), typeRegistry);
+	}
+}
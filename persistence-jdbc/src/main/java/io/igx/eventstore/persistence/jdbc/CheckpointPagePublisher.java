@@ -0,0 +1,261 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.igx.eventstore.Commit;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * @author Vinicius Carvalho
+ * Publishes the commits after a checkpoint one page at a time, each page a short query of the form
+ * {@code CHECKPOINT_NUMBER > ? ORDER BY CHECKPOINT_NUMBER LIMIT ?} that releases its connection once read. Pages are
+ * queried on the executor, apart from the delivery of the commits, and up to {@code readAhead} pages are read ahead of
+ * the page being delivered, so the next page is already on its way while the subscriber works through the current one.
+ * Each page starts after the last checkpoint of the one before it, so a page that fails on a transient or connection
+ * error is queried again from there. Commits are delivered on the executor, never on the thread calling
+ * {@link Subscription#request(long)}.
+ */
+public class CheckpointPagePublisher implements Publisher<Commit> {
+
+	private Logger logger = LoggerFactory.getLogger(CheckpointPagePublisher.class);
+
+	private final JdbcTemplate template;
+	private final String sql;
+	private final Object[] arguments;
+	private final long checkpoint;
+	private final RowMapper<Commit> rowMapper;
+	private final int pageSize;
+	private final int readAhead;
+	private final int maxRetries;
+	private final Executor executor;
+
+	/**
+	 *
+	 * @param sql the page query, its last two parameters being the checkpoint to read after and the page size
+	 * @param arguments the parameters of the query preceding the checkpoint
+	 * @param checkpoint the checkpoint to read after
+	 * @param readAhead number of pages read ahead of the page being delivered, 0 queries a page only once the previous
+	 * one has been delivered and more commits are requested
+	 * @param maxRetries number of times a failed page is queried again before the error is signalled
+	 * @param executor runs the queries, and delivers the commits one task at a time per subscription
+	 */
+	public CheckpointPagePublisher(JdbcTemplate template, String sql, Object[] arguments, long checkpoint, RowMapper<Commit> rowMapper, int pageSize, int readAhead, int maxRetries, Executor executor) {
+		if(pageSize < 1)
+			throw new IllegalArgumentException("Page size must be at least 1");
+		if(readAhead < 0)
+			throw new IllegalArgumentException("Read ahead can not be negative");
+		this.template = template;
+		this.sql = sql;
+		this.arguments = arguments;
+		this.checkpoint = checkpoint;
+		this.rowMapper = rowMapper;
+		this.pageSize = pageSize;
+		this.readAhead = readAhead;
+		this.maxRetries = maxRetries;
+		this.executor = executor;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super Commit> subscriber) {
+		subscriber.onSubscribe(new PageSubscription(subscriber));
+	}
+
+	private final class PageSubscription implements Subscription, Runnable {
+
+		private final Subscriber<? super Commit> subscriber;
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private final Queue<Object> fetched = new ConcurrentLinkedQueue<>();
+		private final ArrayDeque<List<Commit>> pages = new ArrayDeque<>();
+		private final ArrayDeque<Commit> page = new ArrayDeque<>();
+		private volatile boolean cancelled;
+		private volatile Throwable invalidRequest;
+		private long nextCheckpoint = checkpoint;
+		private boolean fetching;
+		private boolean lastPage;
+		private boolean terminated;
+
+		PageSubscription(Subscriber<? super Commit> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if(n <= 0){
+				invalidRequest = new IllegalArgumentException("Rule 3.9: request must be positive, was " + n);
+			}
+			else {
+				long current, next;
+				do {
+					current = requested.get();
+					next = current + n < 0 ? Long.MAX_VALUE : current + n;
+				} while (!requested.compareAndSet(current, next));
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		private void schedule() {
+			if(wip.getAndIncrement() == 0){
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				drain();
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		@SuppressWarnings("unchecked")
+		private void drain() {
+			if(terminated)
+				return;
+			try {
+				if(cancelled || invalidRequest != null){
+					terminate(invalidRequest);
+					return;
+				}
+				Object result = fetched.poll();
+				if(result != null){
+					fetching = false;
+					if(result instanceof Throwable){
+						terminate((Throwable) result);
+						return;
+					}
+					List<Commit> commits = (List<Commit>) result;
+					if(!commits.isEmpty()){
+						pages.add(commits);
+						nextCheckpoint = Long.valueOf(commits.get(commits.size() - 1).getCheckpointToken());
+					}
+					lastPage = commits.size() < pageSize;
+				}
+				long demand = requested.get();
+				long emitted = 0;
+				while (emitted != demand && !cancelled) {
+					if(page.isEmpty()){
+						if(pages.isEmpty())
+							break;
+						page.addAll(pages.poll());
+					}
+					subscriber.onNext(page.poll());
+					emitted++;
+				}
+				if(emitted != 0 && demand != Long.MAX_VALUE){
+					demand = requested.addAndGet(-emitted);
+				}
+				if(cancelled){
+					terminate(null);
+					return;
+				}
+				if(lastPage && !fetching && page.isEmpty() && pages.isEmpty()){
+					terminate(null);
+					subscriber.onComplete();
+					return;
+				}
+				int held = pages.size() + (page.isEmpty() ? 0 : 1);
+				if(!fetching && !lastPage && held < readAhead + (demand > 0 ? 1 : 0)){
+					fetch(nextCheckpoint);
+				}
+			}
+			catch (Throwable t) {
+				terminate(t);
+			}
+		}
+
+		private void fetch(long after) {
+			fetching = true;
+			executor.execute(() -> {
+				Object result;
+				try {
+					result = readPage(after);
+				}
+				catch (Throwable t) {
+					result = t;
+				}
+				fetched.offer(result);
+				schedule();
+			});
+		}
+
+		private List<Commit> readPage(long after) throws InterruptedException {
+			Object[] pageArguments = Arrays.copyOf(arguments, arguments.length + 2);
+			pageArguments[arguments.length] = after;
+			pageArguments[arguments.length + 1] = pageSize;
+			for (int attempt = 1; ; attempt++) {
+				if(cancelled)
+					return Collections.emptyList();
+				try {
+					return template.query(sql, pageArguments, rowMapper);
+				}
+				catch (TransientDataAccessException | RecoverableDataAccessException | DataAccessResourceFailureException e) {
+					if(attempt > maxRetries)
+						throw e;
+					logger.warn("Reading the commits after checkpoint {} failed, resuming from there ({}/{})", after, attempt, maxRetries, e);
+					TimeUnit.MILLISECONDS.sleep(100L * attempt);
+				}
+			}
+		}
+
+		private void terminate(Throwable error) {
+			terminated = true;
+			pages.clear();
+			page.clear();
+			if(error != null){
+				subscriber.onError(error);
+			}
+		}
+	}
+}
@@ -29,33 +29,39 @@ import java.sql.SQLException;
 import java.util.UUID;
 
 import io.igx.eventstore.Commit;
-import io.igx.eventstore.EventMessage;
-import io.igx.eventstore.persistence.BaseCommit;
+import io.igx.eventstore.persistence.LazyCommit;
 import io.igx.eventstore.serializers.Serializer;
 
 import org.springframework.jdbc.core.RowMapper;
 
 /**
  * @author Vinicius Carvalho
+ * Maps a commit row to a {@link LazyCommit}, HEADERS and PAYLOAD are only deserialized when the commit is inspected,
+ * with the serializer matching the FORMAT of the row.
  */
 public class CommitRowMapper implements RowMapper<Commit> {
 
 
-	private Serializer serializer;
+	private PayloadFormats payloadFormats;
 
 	public CommitRowMapper(Serializer serializer) {
-		this.serializer = serializer;
+		this(PayloadFormats.json(serializer));
+	}
+
+	public CommitRowMapper(PayloadFormats payloadFormats) {
+		this.payloadFormats = payloadFormats;
 	}
 
 	public Commit mapRow(ResultSet rs, int rowNum) throws SQLException {
-		return new BaseCommit(rs.getString("STREAM_ID"),
+		return new LazyCommit(rs.getString("STREAM_ID"),
 				rs.getString("BUCKET_ID"),
 				rs.getLong("STREAM_REVISION"),
 				UUID.fromString(rs.getString("COMMIT_ID")),
 				rs.getLong("COMMIT_SEQUENCE"),
 				rs.getLong("COMMIT_STAMP"),
 				String.valueOf(rs.getLong("CHECKPOINT_NUMBER")),
-				serializer.deserializeMap(rs.getBytes("HEADERS")),
-				serializer.deserializeCollection(rs.getBytes("PAYLOAD"), EventMessage.class));
+				rs.getBytes("HEADERS"),
+				rs.getBytes("PAYLOAD"),
+				payloadFormats.readerFor(rs.getInt("FORMAT")));
 	}
 }
@@ -0,0 +1,223 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.persistence.LazyCommit;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * @author Vinicius Carvalho
+ * Deserializes the commits of a source on a pool of workers, several at a time, and delivers them in the order of the
+ * source. At most {@code window} commits are requested from the source ahead of the ones delivered, so a slow commit
+ * holds back the ones after it but never the reading of the source beyond the window. Commits are delivered on the
+ * thread of the source or of a worker, one at a time.
+ */
+public class DeserializingPublisher implements Publisher<Commit> {
+
+	private final Publisher<Commit> source;
+	private final Executor workers;
+	private final int window;
+
+	/**
+	 *
+	 * @param source the publisher of the commits, read from storage with their headers and events still serialized
+	 * @param workers runs the deserialization of each commit
+	 * @param window maximum number of commits requested from the source and not yet delivered
+	 */
+	public DeserializingPublisher(Publisher<Commit> source, Executor workers, int window) {
+		if(window < 1)
+			throw new IllegalArgumentException("Window must be at least 1");
+		this.source = source;
+		this.workers = workers;
+		this.window = window;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super Commit> subscriber) {
+		source.subscribe(new DeserializingSubscriber(subscriber));
+	}
+
+	private static final class Slot {
+
+		final Commit commit;
+		volatile boolean done;
+		volatile Throwable error;
+
+		Slot(Commit commit) {
+			this.commit = commit;
+		}
+	}
+
+	private final class DeserializingSubscriber implements Subscriber<Commit>, Subscription {
+
+		private final Subscriber<? super Commit> subscriber;
+		private final Queue<Slot> slots = new ConcurrentLinkedQueue<>();
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private final int replenish = Math.max(1, window / 2);
+		private Subscription upstream;
+		private volatile boolean done;
+		private volatile Throwable error;
+		private volatile boolean cancelled;
+		private volatile Throwable invalidRequest;
+		private int consumed;
+		private boolean terminated;
+
+		DeserializingSubscriber(Subscriber<? super Commit> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.upstream = subscription;
+			subscriber.onSubscribe(this);
+			subscription.request(window);
+		}
+
+		@Override
+		public void onNext(Commit commit) {
+			Slot slot = new Slot(commit);
+			slots.offer(slot);
+			workers.execute(() -> {
+				try {
+					if(commit instanceof LazyCommit){
+						((LazyCommit) commit).deserialize();
+					}
+				}
+				catch (Throwable t) {
+					slot.error = t;
+				}
+				slot.done = true;
+				drain();
+			});
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			error = t;
+			done = true;
+			drain();
+		}
+
+		@Override
+		public void onComplete() {
+			done = true;
+			drain();
+		}
+
+		@Override
+		public void request(long n) {
+			if(n <= 0){
+				invalidRequest = new IllegalArgumentException("Rule 3.9: request must be positive, was " + n);
+			}
+			else {
+				long current, next;
+				do {
+					current = requested.get();
+					next = current + n < 0 ? Long.MAX_VALUE : current + n;
+				} while (!requested.compareAndSet(current, next));
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			drain();
+		}
+
+		private void drain() {
+			if(wip.getAndIncrement() != 0)
+				return;
+			int missed = 1;
+			do {
+				emit();
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void emit() {
+			if(terminated)
+				return;
+			if(cancelled || invalidRequest != null){
+				terminate(invalidRequest);
+				return;
+			}
+			long demand = requested.get();
+			long emitted = 0;
+			while (emitted != demand && !cancelled) {
+				Slot slot = slots.peek();
+				if(slot == null || !slot.done)
+					break;
+				slots.poll();
+				if(slot.error != null){
+					terminate(slot.error);
+					return;
+				}
+				subscriber.onNext(slot.commit);
+				emitted++;
+				if(++consumed == replenish){
+					consumed = 0;
+					upstream.request(replenish);
+				}
+			}
+			if(emitted != 0 && demand != Long.MAX_VALUE){
+				requested.addAndGet(-emitted);
+			}
+			if(cancelled){
+				terminate(null);
+				return;
+			}
+			if(done && slots.isEmpty()){
+				terminated = true;
+				if(error != null){
+					subscriber.onError(error);
+				}
+				else {
+					subscriber.onComplete();
+				}
+			}
+		}
+
+		private void terminate(Throwable failure) {
+			terminated = true;
+			slots.clear();
+			upstream.cancel();
+			if(failure != null){
+				subscriber.onError(failure);
+			}
+		}
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.CommitAttempt;
+import io.igx.eventstore.exceptions.ConcurrencyException;
+import io.igx.eventstore.persistence.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.dao.DuplicateKeyException;
+
+/**
+ * @author Vinicius Carvalho
+ * Group commit for {@link JDBCPersistentStream}. Attempts coming from any number of threads are queued and a single
+ * writer thread flushes them, with their stream heads, as one JDBC batch inside one transaction, paying one round trip (and one fsync) for the
+ * whole group. A batch is flushed once it reaches the maximum size or once its first attempt waited the maximum linger time.
+ *
+ * Each caller is completed individually: if the batch fails (e.g. a duplicate key on one of the rows) the transaction
+ * is rolled back and every attempt is replayed on its own, so only the conflicting ones get a {@link ConcurrencyException}.
+ * A caller waits at most the configured time for its batch; an attempt that times out may still be persisted later,
+ * retrying it with the same commit id is then recognized as a duplicate.
+ */
+public class GroupCommitWriter {
+
+	private Logger logger = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+	private final JDBCPersistentStream engine;
+	private final int maxBatchSize;
+	private final long maxLingerNanos;
+	private final long maxWaitMillis;
+	private final BlockingQueue<PendingCommit> queue;
+	private final Thread writer;
+	private final Object lock = new Object();
+	private volatile boolean running = true;
+
+	public GroupCommitWriter(JDBCPersistentStream engine, int maxBatchSize, long maxLingerMillis, long maxWaitMillis) {
+		if(maxBatchSize < 1)
+			throw new IllegalArgumentException("Batch size must be at least 1");
+		this.engine = engine;
+		this.maxBatchSize = maxBatchSize;
+		this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+		this.maxWaitMillis = maxWaitMillis;
+		this.queue = new LinkedBlockingQueue<>();
+		this.writer = new Thread(this::run, "eventstore-group-commit");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Queues the attempt and waits for the batch it joined to be flushed.
+	 * @param attempt The attempt to persist
+	 * @param headers The already serialized headers of the attempt
+	 * @param payload The already serialized events of the attempt
+	 * @return The persisted commit
+	 * @throws ConcurrencyException if this attempt conflicts with an existing commit
+	 * @throws io.igx.eventstore.exceptions.DuplicateCommitException if this attempt retries an existing commit
+	 * @throws StorageException if the batch was not flushed within the maximum wait time, or the writer was interrupted
+	 */
+	public Commit commit(CommitAttempt attempt, byte[] headers, byte[] payload) {
+		PendingCommit pending = new PendingCommit(attempt, headers, payload);
+		synchronized (lock){
+			if(!running)
+				throw new IllegalStateException("Group commit writer has been closed");
+			queue.add(pending);
+		}
+		try {
+			return pending.result.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e) {
+			throw new StorageException("Timed out after " + maxWaitMillis + "ms waiting for commit " + attempt.getGuid() + " to be flushed", e);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StorageException("Interrupted while waiting for commit " + attempt.getGuid(), e);
+		}
+		catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new StorageException("Could not persist commit " + attempt.getGuid(), e.getCause());
+		}
+	}
+
+	/**
+	 * Stops accepting attempts, flushes whatever is still queued and waits for the writer thread to finish. Attempts the
+	 * writer could not flush are failed.
+	 */
+	public void close() {
+		synchronized (lock){
+			running = false;
+		}
+		try {
+			writer.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		List<PendingCommit> left = new ArrayList<>();
+		queue.drainTo(left);
+		fail(left, new StorageException("Group commit writer has been closed"));
+	}
+
+	private void run() {
+		List<PendingCommit> batch = new ArrayList<>(maxBatchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				PendingCommit first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if(first == null)
+					continue;
+				batch.add(first);
+				long deadline = System.nanoTime() + maxLingerNanos;
+				while (batch.size() < maxBatchSize) {
+					if(queue.drainTo(batch, maxBatchSize - batch.size()) > 0)
+						continue;
+					long remaining = deadline - System.nanoTime();
+					PendingCommit next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+					if(next == null)
+						break;
+					batch.add(next);
+				}
+				flush(batch);
+			}
+			catch (InterruptedException e) {
+				logger.warn("Group commit writer interrupted, failing {} batched attempts, {} attempts still queued", batch.size(), queue.size());
+				fail(batch, new StorageException("Group commit writer interrupted while collecting a batch", e));
+			}
+			catch (Throwable t) {
+				logger.error("Unexpected failure flushing a group commit", t);
+				fail(batch, t);
+			}
+			finally {
+				batch.clear();
+			}
+		}
+	}
+
+	private static void fail(List<PendingCommit> pendings, Throwable cause) {
+		pendings.forEach(pending -> pending.result.completeExceptionally(cause));
+	}
+
+	private void flush(List<PendingCommit> batch) {
+		logger.debug("Flushing a group of {} commit attempts", batch.size());
+		try {
+			List<Long> checkpoints = insert(batch);
+			for (int i = 0; i < batch.size(); i++) {
+				PendingCommit pending = batch.get(i);
+				pending.result.complete(engine.toCommit(pending.attempt, checkpoints.get(i)));
+			}
+			return;
+		}
+		catch (DuplicateKeyException e) {
+			if(batch.size() == 1){
+				batch.get(0).result.completeExceptionally(engine.conflictOf(batch.get(0).attempt));
+				return;
+			}
+			logger.debug("Group of {} attempts contains a conflicting commit, persisting them one by one", batch.size());
+		}
+		catch (RuntimeException e) {
+			if(batch.size() == 1){
+				batch.get(0).result.completeExceptionally(e);
+				return;
+			}
+			logger.warn("Group of {} attempts failed, persisting them one by one", batch.size(), e);
+		}
+		for (PendingCommit pending : batch) {
+			flush(Collections.singletonList(pending));
+		}
+	}
+
+	private List<Long> insert(List<PendingCommit> batch) {
+		List<CommitAttempt> attempts = new ArrayList<>(batch.size());
+		List<byte[]> headers = new ArrayList<>(batch.size());
+		List<byte[]> payloads = new ArrayList<>(batch.size());
+		for (PendingCommit pending : batch) {
+			attempts.add(pending.attempt);
+			headers.add(pending.headers);
+			payloads.add(pending.payload);
+		}
+		return engine.insert(attempts, headers, payloads);
+	}
+
+	private static class PendingCommit {
+		final CommitAttempt attempt;
+		final byte[] headers;
+		final byte[] payload;
+		final CompletableFuture<Commit> result = new CompletableFuture<>();
+
+		PendingCommit(CommitAttempt attempt, byte[] headers, byte[] payload) {
+			this.attempt = attempt;
+			this.headers = headers;
+			this.payload = payload;
+		}
+	}
+}
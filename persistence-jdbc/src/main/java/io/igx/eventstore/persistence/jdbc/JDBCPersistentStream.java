@@ -30,31 +30,52 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 import io.igx.eventstore.Checkpoint;
 import io.igx.eventstore.Commit;
 import io.igx.eventstore.CommitAttempt;
+import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.EventStore;
 import io.igx.eventstore.exceptions.ConcurrencyException;
+import io.igx.eventstore.exceptions.DuplicateCommitException;
 import io.igx.eventstore.persistence.BaseCommit;
+import io.igx.eventstore.persistence.LazyCommit;
 import io.igx.eventstore.serializers.Serializer;
 import io.igx.eventstore.Snapshot;
 import io.igx.eventstore.persistence.PersistentStream;
 import io.igx.eventstore.persistence.StreamHead;
+import io.igx.eventstore.persistence.jdbc.properties.JDBCPersistenceProperties;
 import io.igx.eventstore.persistence.jdbc.properties.SQLCommands;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
-import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.support.AbstractLobCreatingPreparedStatementCallback;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.lob.LobCreator;
 import org.springframework.jdbc.support.lob.LobHandler;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * @author Vinicius Carvalho
@@ -63,15 +84,60 @@ public class JDBCPersistentStream implements PersistentStream {
 
 
 	private JdbcTemplate template;
+	private TransactionTemplate transactionTemplate;
 	private SQLCommands sqlCommands;
-	private Serializer serializer;
+	private PayloadFormats payloadFormats;
 	private LobHandler lobHandler;
+	private GroupCommitWriter groupCommitWriter;
+	private final int prefetch;
+	private final long maxBufferedBytes;
+	private final int pageSize;
+	private final int readAheadPages;
+	private final int maxPageRetries;
+	private final ExecutorService readExecutor;
+	private final ExecutorService deserializerExecutor;
 
 	public JDBCPersistentStream(JdbcTemplate template, SQLCommands sqlCommands, Serializer serializer, LobHandler lobHandler) {
+		this(template, new TransactionTemplate(new DataSourceTransactionManager(template.getDataSource())), sqlCommands, new JDBCPersistenceProperties(), serializer, lobHandler);
+	}
+
+	public JDBCPersistentStream(JdbcTemplate template, TransactionTemplate transactionTemplate, SQLCommands sqlCommands, JDBCPersistenceProperties properties, Serializer serializer, LobHandler lobHandler) {
+		this(template, transactionTemplate, sqlCommands, properties, PayloadFormats.json(serializer), lobHandler);
+	}
+
+	public JDBCPersistentStream(JdbcTemplate template, TransactionTemplate transactionTemplate, SQLCommands sqlCommands, JDBCPersistenceProperties properties, PayloadFormats payloadFormats, LobHandler lobHandler) {
 		this.template = template;
-		this.serializer = serializer;
+		this.transactionTemplate = transactionTemplate;
+		this.payloadFormats = payloadFormats;
 		this.sqlCommands = sqlCommands;
 		this.lobHandler = lobHandler;
+		this.prefetch = properties.getReads().getPrefetch();
+		this.maxBufferedBytes = properties.getReads().getMaxBufferedBytes();
+		this.pageSize = properties.getReads().getPageSize();
+		this.readAheadPages = properties.getReads().getReadAheadPages();
+		this.maxPageRetries = properties.getReads().getMaxPageRetries();
+		AtomicInteger readers = new AtomicInteger();
+		this.readExecutor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "eventstore-reader-" + readers.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		int deserializerThreads = properties.getReads().getDeserializerThreads();
+		if(deserializerThreads > 0){
+			AtomicInteger deserializers = new AtomicInteger();
+			this.deserializerExecutor = Executors.newFixedThreadPool(deserializerThreads, runnable -> {
+				Thread thread = new Thread(runnable, "eventstore-deserializer-" + deserializers.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		else {
+			this.deserializerExecutor = null;
+		}
+		JDBCPersistenceProperties.GroupCommit groupCommit = properties.getGroupCommit();
+		if(groupCommit.isEnabled()){
+			this.groupCommitWriter = new GroupCommitWriter(this, groupCommit.getMaxBatchSize(), groupCommit.getMaxLingerMillis(), groupCommit.getMaxWaitMillis());
+		}
 	}
 
 
@@ -81,11 +147,28 @@ public class JDBCPersistentStream implements PersistentStream {
 	}
 
 	public Flux<Commit> from(String checkpointToken) {
-		return query(sqlCommands.getCommitsFromCheckpoint(),new Object[]{Long.valueOf(checkpointToken)});
+		if(pageSize > 0){
+			return pages(sqlCommands.getCommitsFromCheckpointPage(), new Object[]{}, checkpointToken);
+		}
+		return query(sqlCommands.getCommitsFromCheckpoint(),new Object[]{checkpointOf(checkpointToken)});
 	}
 
 	public Flux<Commit> from(String bucketId, String checkpointToken) {
-		return query(sqlCommands.getCommitsFromBucketAndCheckpoint(), new Object[]{bucketId,Long.valueOf(checkpointToken)});
+		return deserialized(readBucket(bucketId, checkpointToken));
+	}
+
+	/**
+	 * The bucket is read once, on a single connection, and its commits are split by stream into bounded partitions,
+	 * see {@link StreamPartitions}. Each partition deserializes its commits on a reader thread of its own.
+	 */
+	@Override
+	public List<Flux<Commit>> from(String bucketId, String checkpointToken, int partitions) {
+		StreamPartitions split = new StreamPartitions(readBucket(bucketId, checkpointToken), partitions, prefetch, readExecutor);
+		List<Flux<Commit>> rails = new ArrayList<>(partitions);
+		for (Publisher<Commit> partition : split.getPartitions()) {
+			rails.add(Flux.from(partition));
+		}
+		return rails;
 	}
 
 	public Flux<Commit> from(String bucketId, LocalDateTime start, LocalDateTime stop) {
@@ -97,6 +180,12 @@ public class JDBCPersistentStream implements PersistentStream {
 				new Object[]{bucketId,streamId,minRevision,maxRevision,0});
 	}
 
+	public Flux<Map<String, Object>> getCommitHeaders(String bucketId, String streamId, Long minRevision, Long maxRevision) {
+		return query(sqlCommands.getCommitHeadersFromStartingRevision(),
+				new Object[]{bucketId,streamId,minRevision,maxRevision},
+				new CommitHeadersRowMapper(payloadFormats));
+	}
+
 	public Checkpoint getCheckPoint(String checkpointToken) {
 		return null;
 	}
@@ -110,15 +199,15 @@ public class JDBCPersistentStream implements PersistentStream {
 	}
 
 	public void purge() {
-		String sql[] = sqlCommands.getPurgeStorage().split(";");
-		template.update(sql[0]);
-		template.update(sql[1]);
+		for (String sql : sqlCommands.getPurgeStorage().split(";")) {
+			template.update(sql);
+		}
 	}
 
 	public void purge(String bucketId) {
-		String sql[] = sqlCommands.getPurgeBucket().split(";");
-		template.update(sql[0], new Object[]{bucketId});
-		template.update(sql[1], new Object[]{bucketId});
+		for (String sql : sqlCommands.getPurgeBucket().split(";")) {
+			template.update(sql, new Object[]{bucketId});
+		}
 	}
 
 	public void drop() {
@@ -126,9 +215,12 @@ public class JDBCPersistentStream implements PersistentStream {
 	}
 
 	public void deleteStream(String bucketId, String streamId) {
-		String sql[] = sqlCommands.getDeleteStream().split(";");
-		template.update(sql[0],new Object[]{bucketId,streamId});
-		template.update(sql[1],new Object[]{bucketId,streamId});
+		transactionTemplate.execute(status -> {
+			for (String sql : sqlCommands.getDeleteStream().split(";")) {
+				template.update(sql,new Object[]{bucketId,streamId});
+			}
+			return null;
+		});
 	}
 
 	@Override
@@ -141,118 +233,321 @@ public class JDBCPersistentStream implements PersistentStream {
 		return Optional.ofNullable(template.queryForObject(sqlCommands.getCurrentCommitSequence(),new Object[]{bucketId,streamId,minRevision,maxRevision},Long.class)).orElse(0L);
 	}
 
+	@Override
+	public StreamHead getStreamHead(String bucketId, String streamId) {
+		List<StreamHead> heads = template.query(sqlCommands.getStreamHead(), new Object[]{bucketId,streamId}, new StreamHeadRowMapper());
+		return heads.isEmpty() ? null : heads.get(0);
+	}
 
 	public Commit commit(CommitAttempt attempt) {
+		if(groupCommitWriter != null){
+			Serializer serializer = payloadFormats.writerFor(attempt.getBucketId());
+			return groupCommitWriter.commit(attempt, serializer.serialize(attempt.getHeaders()), serializer.serialize(attempt.getEvents()));
+		}
 		Commit commit = null;
 		try {
 			commit = persistCommit(attempt);
 		}
 		catch (DuplicateKeyException e) {
-			throw new ConcurrencyException();
+			throw conflictOf(attempt);
 		}
 		return commit;
 	}
 
+	/**
+	 * Persists every attempt, with their stream heads, in one transaction using one batched INSERT per table.
+	 * Bypasses the group commit writer, the attempts must not be split across batches.
+	 */
+	@Override
+	public List<Commit> commitAll(List<CommitAttempt> attempts) {
+		List<byte[]> headers = new ArrayList<>(attempts.size());
+		List<byte[]> payloads = new ArrayList<>(attempts.size());
+		for (CommitAttempt attempt : attempts) {
+			Serializer serializer = payloadFormats.writerFor(attempt.getBucketId());
+			headers.add(serializer.serialize(attempt.getHeaders()));
+			payloads.add(serializer.serialize(attempt.getEvents()));
+		}
+		List<Long> checkpoints;
+		try {
+			checkpoints = insert(attempts, headers, payloads);
+		}
+		catch (DuplicateKeyException e) {
+			throw conflictOf(attempts);
+		}
+		List<Commit> commits = new ArrayList<>(attempts.size());
+		for (int i = 0; i < attempts.size(); i++) {
+			commits.add(toCommit(attempts.get(i), checkpoints.get(i)));
+		}
+		return commits;
+	}
+
+	/**
+	 * Locks the stream head with a SELECT ... FOR UPDATE, so concurrent appends to the stream queue up behind it
+	 * instead of failing on the unique indexes. A stream without head can still race on its first commit, and on InnoDB
+	 * locking a missing head takes a gap lock: concurrent first appends to streams in the same gap may deadlock. Either
+	 * way the loser gets a {@link ConcurrencyException}.
+	 */
+	@Override
+	public Commit append(String bucketId, String streamId, long expectedRevision, UUID guid, Collection<EventMessage> events, Map<String, Object> headers, Consumer<CommitAttempt> preCommit) {
+		try {
+			return transactionTemplate.execute(status -> {
+				List<StreamHead> heads = template.query(sqlCommands.getStreamHeadForUpdate(), new Object[]{bucketId,streamId}, new StreamHeadRowMapper());
+				long revision = heads.isEmpty() ? 0L : heads.get(0).getHeadRevision();
+				long sequence = heads.isEmpty() ? 0L : heads.get(0).getHeadCommitSequence();
+				if(expectedRevision != EventStore.ANY_REVISION && expectedRevision != revision){
+					throw new ConcurrencyException(bucketId, streamId, "Stream '" + streamId + "' is at revision " + revision + ", expected " + expectedRevision);
+				}
+				CommitAttempt attempt = new CommitAttempt(bucketId, streamId, revision + events.size(), guid, sequence + 1, System.currentTimeMillis(), headers, new ArrayList<>(events));
+				preCommit.accept(attempt);
+				return persistCommit(attempt);
+			});
+		}
+		catch (DuplicateKeyException e) {
+			Commit original = getCommit(bucketId, streamId, guid);
+			if(original != null){
+				throw new DuplicateCommitException(original);
+			}
+			throw new ConcurrencyException(bucketId, streamId, "Stream '" + streamId + "' has been created concurrently");
+		}
+		catch (ConcurrencyFailureException e) {
+			throw new ConcurrencyException(bucketId, streamId, "Stream '" + streamId + "' could not be locked for appending", e);
+		}
+	}
+
+	@Override
+	public Commit getCommit(String bucketId, String streamId, UUID commitId) {
+		List<Commit> commits = template.query(sqlCommands.getDuplicateCommit(), new Object[]{bucketId,streamId,commitId.toString()}, new CommitRowMapper(payloadFormats));
+		return commits.isEmpty() ? null : commits.get(0);
+	}
+
+	/**
+	 * Tells why an attempt collided with a unique index. Only then the commit identifier is looked up, an attempt
+	 * reusing the identifier of a persisted commit is a retry rather than a conflict.
+	 * @return a {@link DuplicateCommitException} carrying the original commit, or a {@link ConcurrencyException}
+	 */
+	RuntimeException conflictOf(CommitAttempt attempt) {
+		Commit original = getCommit(attempt.getBucketId(), attempt.getStreamId(), attempt.getGuid());
+		if(original != null){
+			return new DuplicateCommitException(original);
+		}
+		return new ConcurrencyException(attempt.getBucketId(), attempt.getStreamId(), "Commit sequence " + attempt.getCommitSequence() + " or revision " + attempt.getStreamRevision() + " of stream '" + attempt.getStreamId() + "' is already taken");
+	}
+
+	/**
+	 * Finds which of the attempts persisted together collided with a unique index, once their transaction has been
+	 * rolled back: a retried commit, or a stream whose head has moved past the attempt.
+	 * @return the error to report for that attempt, a {@link ConcurrencyException} without stream if none can be told
+	 */
+	RuntimeException conflictOf(List<CommitAttempt> attempts) {
+		for (CommitAttempt attempt : attempts) {
+			Commit original = getCommit(attempt.getBucketId(), attempt.getStreamId(), attempt.getGuid());
+			if(original != null){
+				return new DuplicateCommitException(original);
+			}
+			StreamHead head = getStreamHead(attempt.getBucketId(), attempt.getStreamId());
+			if(head != null && head.getHeadCommitSequence() >= attempt.getCommitSequence()){
+				return conflictOf(attempt);
+			}
+		}
+		return new ConcurrencyException("One of " + attempts.size() + " attempts conflicts with a persisted commit");
+	}
+
+	/**
+	 * Inserts the attempts and their stream heads as two JDBC batches inside one transaction.
+	 * @return the checkpoint of each attempt, in the same order
+	 */
+	List<Long> insert(List<CommitAttempt> attempts, List<byte[]> headers, List<byte[]> payloads) {
+		return transactionTemplate.execute(status -> template.execute((ConnectionCallback<List<Long>>) con -> {
+			List<Long> checkpoints = new ArrayList<>(attempts.size());
+			LobCreator lobCreator = lobHandler.getLobCreator();
+			try (PreparedStatement ps = con.prepareStatement(sqlCommands.getPersistCommit(), new String[] {"CHECKPOINT_NUMBER"})) {
+				for (int i = 0; i < attempts.size(); i++) {
+					bindCommit(ps, lobCreator, attempts.get(i), headers.get(i), payloads.get(i));
+					ps.addBatch();
+				}
+				ps.executeBatch();
+				try (ResultSet keys = ps.getGeneratedKeys()) {
+					while (keys.next()) {
+						checkpoints.add(keys.getLong(1));
+					}
+				}
+			}
+			finally {
+				lobCreator.close();
+			}
+			try (PreparedStatement ps = con.prepareStatement(sqlCommands.getPersistStreamHead())) {
+				for (int i = 0; i < attempts.size(); i++) {
+					bindStreamHead(ps, attempts.get(i), checkpoints.get(i));
+					ps.addBatch();
+				}
+				ps.executeBatch();
+			}
+			return checkpoints;
+		}));
+	}
+
+	/**
+	 * Releases the group commit writer, if any, flushing the attempts still queued, and stops the reader threads.
+	 */
+	public void close() {
+		if(groupCommitWriter != null){
+			groupCommitWriter.close();
+		}
+		readExecutor.shutdown();
+		if(deserializerExecutor != null){
+			deserializerExecutor.shutdown();
+		}
+	}
+
 
 
 	public <T> Snapshot<T> getSnapshot(String bucketId, String streamId, int maxRevision, Class<T> type) {
-		return template.queryForObject(sqlCommands.getSnapshot(),new Object[]{bucketId,streamId,maxRevision}, new SnapshotRowMapper<T>(serializer,type));
+		return template.queryForObject(sqlCommands.getSnapshot(),new Object[]{bucketId,streamId,maxRevision}, new SnapshotRowMapper<T>(payloadFormats,type));
 	}
 
 	public boolean add(Snapshot snapshot) {
+		return transactionTemplate.execute(status -> {
+			boolean added = appendSnapshot(snapshot);
+			if(added){
+				template.update(sqlCommands.getUpdateSnapshotRevision(), new Object[]{snapshot.getStreamRevision(),snapshot.getBucketId(),snapshot.getStreamId()});
+			}
+			return added;
+		});
+	}
+
+	private boolean appendSnapshot(Snapshot snapshot) {
 		return template.execute(sqlCommands.getAppendSnapshotToCommit(), new AbstractLobCreatingPreparedStatementCallback(lobHandler){
 			@Override
 			protected void setValues(PreparedStatement ps, LobCreator lobCreator) throws SQLException, DataAccessException {
 				ps.setString(1,snapshot.getBucketId());
 				ps.setString(2,snapshot.getStreamId());
 				ps.setLong(3,snapshot.getStreamRevision());
-				lobCreator.setBlobAsBytes(ps,4,serializer.serialize(snapshot.getPayload()));
-				ps.setString(5,snapshot.getBucketId());
-				ps.setString(6,snapshot.getStreamId());
-				ps.setLong(7,snapshot.getStreamRevision());
-				ps.setString(8,snapshot.getBucketId());
-				ps.setString(9,snapshot.getStreamId());
-				ps.setLong(10,snapshot.getStreamRevision());
+				lobCreator.setBlobAsBytes(ps,4,payloadFormats.writerFor(snapshot.getBucketId()).serialize(snapshot.getPayload()));
+				ps.setInt(5,payloadFormats.formatFor(snapshot.getBucketId()).getId());
+				ps.setString(6,snapshot.getBucketId());
+				ps.setString(7,snapshot.getStreamId());
+				ps.setLong(8,snapshot.getStreamRevision());
+				ps.setString(9,snapshot.getBucketId());
+				ps.setString(10,snapshot.getStreamId());
+				ps.setLong(11,snapshot.getStreamRevision());
 
 			}
 		}) > 0;
 	}
 
 	public Flux<StreamHead> getStreamsToSnapshot(String bucketId, int maxThreshold) {
-		return Flux.create(subscriber -> {
-			try {
-				template.query(sqlCommands.getStreamsRequiringSnapshots(), new Object[] {bucketId, maxThreshold}, new ResultSetExtractor<Object>() {
-					@Override
-					public Object extractData(ResultSet rs) throws SQLException, DataAccessException {
-						int row = 0;
-						StreamHeadRowMapper rowMapper = new StreamHeadRowMapper();
-						while(rs.next() && !subscriber.isCancelled()){
-							subscriber.onNext(rowMapper.mapRow(rs,row++));
-						}
-						if(!subscriber.isCancelled()){
-							subscriber.onComplete();
-						}
-						return null;
-					}
-				});
-			}catch (Exception ex){
-				if(!subscriber.isCancelled()){
-					subscriber.onError(ex);
-				}
-			}
-		});
+		return query(sqlCommands.getStreamsRequiringSnapshots(), new Object[] {bucketId, maxThreshold}, new StreamHeadRowMapper());
+	}
+
+	/**
+	 * Reads after the checkpoint one page at a time, see {@link CheckpointPagePublisher}.
+	 */
+	private Flux<Commit> pages(String sql, Object[] arguments, String checkpointToken){
+		return deserialized(pageReader(sql, arguments, checkpointToken));
+	}
+
+	private Publisher<Commit> pageReader(String sql, Object[] arguments, String checkpointToken){
+		return new CheckpointPagePublisher(template, sql, arguments, checkpointOf(checkpointToken), new CommitRowMapper(payloadFormats), pageSize, readAheadPages, maxPageRetries, readExecutor);
+	}
+
+	/**
+	 * The commits of a bucket after a checkpoint, still serialized, read in pages when a page size is configured.
+	 */
+	private Publisher<Commit> readBucket(String bucketId, String checkpointToken){
+		if(pageSize > 0){
+			return pageReader(sqlCommands.getCommitsFromBucketAndCheckpointPage(), new Object[]{bucketId}, checkpointToken);
+		}
+		return rows(sqlCommands.getCommitsFromBucketAndCheckpoint(), new Object[]{bucketId,checkpointOf(checkpointToken)});
+	}
+
+	private static long checkpointOf(String checkpointToken){
+		return (checkpointToken == null) ? 0L : Long.valueOf(checkpointToken);
 	}
 
 	private Flux<Commit> query(String sql, Object[] arguments){
-		return Flux.create(subscriber -> {
-			try{
-				template.query(new StreamPreparedStatementCreator(sql),new ArgumentPreparedStatementSetter(arguments), new ResultSetExtractor<Object>() {
-					@Override
-					public Object extractData(ResultSet rs) throws SQLException, DataAccessException {
-						int row = 0;
-						CommitRowMapper rowMapper = new CommitRowMapper(serializer);
-						while(rs.next() && !subscriber.isCancelled()){
-							subscriber.onNext(rowMapper.mapRow(rs,row++));
-						}
-						if(!subscriber.isCancelled()){
-							subscriber.onComplete();
-						}
-						return null;
-					}
-				});
-			}catch (Exception ex){
-				if(!subscriber.isCancelled()){
-					subscriber.onError(ex);
+		return deserialized(rows(sql, arguments));
+	}
+
+	private Publisher<Commit> rows(String sql, Object[] arguments){
+		return rows(sql, arguments, new CommitRowMapper(payloadFormats), commit -> (commit instanceof LazyCommit) ? ((LazyCommit) commit).getSerializedSize() : 0);
+	}
+
+	/**
+	 * When deserializer threads are configured the reading thread only copies the raw columns of each row, the
+	 * headers and events being parsed in parallel by {@link DeserializingPublisher} before reaching the subscriber.
+	 * Inside a transaction the rows must be read on the thread of the transaction, see {@link ResultSetPublisher}, so
+	 * they are parsed there as well.
+	 */
+	private Flux<Commit> deserialized(Publisher<Commit> commits){
+		if(deserializerExecutor == null || TransactionSynchronizationManager.isActualTransactionActive()){
+			return Flux.from(commits);
+		}
+		return Flux.from(new DeserializingPublisher(commits, deserializerExecutor, prefetch));
+	}
+
+	private <T> Flux<T> query(String sql, Object[] arguments, RowMapper<T> rowMapper){
+		return query(sql, arguments, rowMapper, row -> 0);
+	}
+
+	/**
+	 * Rows are read as the subscriber requests them, see {@link ResultSetPublisher}.
+	 */
+	private <T> Flux<T> query(String sql, Object[] arguments, RowMapper<T> rowMapper, ToLongFunction<? super T> weigher){
+		return Flux.from(rows(sql, arguments, rowMapper, weigher));
+	}
+
+	private <T> Publisher<T> rows(String sql, Object[] arguments, RowMapper<T> rowMapper, ToLongFunction<? super T> weigher){
+		return new ResultSetPublisher<>(template, new StreamPreparedStatementCreator(sql), new ArgumentPreparedStatementSetter(arguments), rowMapper,
+				weigher, prefetch, maxBufferedBytes, readExecutor);
+	}
+
+	private Commit persistCommit(final CommitAttempt attempt){
+		return transactionTemplate.execute(status -> {
+			KeyHolder keyHolder = new GeneratedKeyHolder();
+			template.update(new AbstractLobPreparedStatementCreator(lobHandler,sqlCommands.getPersistCommit(),"CHECKPOINT_NUMBER") {
+				@Override
+				protected void setValues(PreparedStatement ps, LobCreator lobCreator) throws SQLException, DataAccessException {
+					Serializer serializer = payloadFormats.writerFor(attempt.getBucketId());
+					bindCommit(ps, lobCreator, attempt, serializer.serialize(attempt.getHeaders()), serializer.serialize(attempt.getEvents()));
 				}
-			}
+			},keyHolder);
+			Long checkpoint = keyHolder.getKey().longValue();
+			template.update(sqlCommands.getPersistStreamHead(), ps -> bindStreamHead(ps, attempt, checkpoint));
+			return toCommit(attempt, checkpoint);
 		});
 	}
 
-	private Commit persistCommit(final CommitAttempt attempt){
-		KeyHolder keyHolder = new GeneratedKeyHolder();
-		template.update(new AbstractLobPreparedStatementCreator(lobHandler,sqlCommands.getPersistCommit(),"CHECKPOINT_NUMBER") {
-			@Override
-			protected void setValues(PreparedStatement ps, LobCreator lobCreator) throws SQLException, DataAccessException {
-				ps.setString(1,attempt.getBucketId());
-				ps.setString(2,attempt.getStreamId());
-				ps.setString(3,attempt.getStreamId());
-				ps.setString(4,attempt.getGuid().toString());
-				ps.setLong(5,attempt.getCommitSequence());
-				ps.setLong(6,attempt.getStreamRevision());
-				ps.setInt(7,attempt.getEvents().size());
-				ps.setLong(8, attempt.getCommitStamp());
-				lobCreator.setBlobAsBytes(ps,9,serializer.serialize(attempt.getHeaders()));
-				lobCreator.setBlobAsBytes(ps,10,serializer.serialize(attempt.getEvents()));
-			}
-		},keyHolder);
+	void bindCommit(PreparedStatement ps, LobCreator lobCreator, CommitAttempt attempt, byte[] headers, byte[] payload) throws SQLException {
+		ps.setString(1,attempt.getBucketId());
+		ps.setString(2,attempt.getStreamId());
+		ps.setString(3,attempt.getStreamId());
+		ps.setString(4,attempt.getGuid().toString());
+		ps.setLong(5,attempt.getCommitSequence());
+		ps.setLong(6,attempt.getStreamRevision());
+		ps.setInt(7,attempt.getEvents().size());
+		ps.setLong(8, attempt.getCommitStamp());
+		lobCreator.setBlobAsBytes(ps,9,headers);
+		lobCreator.setBlobAsBytes(ps,10,payload);
+		ps.setInt(11,payloadFormats.formatFor(attempt.getBucketId()).getId());
+	}
+
+	void bindStreamHead(PreparedStatement ps, CommitAttempt attempt, Long checkpoint) throws SQLException {
+		ps.setString(1,attempt.getBucketId());
+		ps.setString(2,attempt.getStreamId());
+		ps.setString(3,attempt.getStreamId());
+		ps.setLong(4,attempt.getStreamRevision());
+		ps.setLong(5,attempt.getCommitSequence());
+		ps.setLong(6,checkpoint);
+	}
 
+	Commit toCommit(CommitAttempt attempt, Long checkpoint){
 		return new BaseCommit(attempt.getStreamId(),
 				attempt.getBucketId(),
 				attempt.getStreamRevision(),
 				attempt.getGuid(),
 				attempt.getCommitSequence(),
 				attempt.getCommitStamp(),
-				keyHolder.getKey().toString(),
+				checkpoint.toString(),
 				attempt.getHeaders(),
 				attempt.getEvents());
 	}
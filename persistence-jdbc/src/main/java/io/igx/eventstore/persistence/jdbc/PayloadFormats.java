@@ -0,0 +1,96 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.igx.eventstore.persistence.StorageException;
+import io.igx.eventstore.serializers.Serializer;
+
+/**
+ * @author Vinicius Carvalho
+ * Picks the serializer rows are written with, per bucket, and the one each row is read back with, from its FORMAT
+ * column. Buckets can be moved to another format at any time, rows already stored keep being read with their own.
+ */
+public class PayloadFormats {
+
+	private final Map<PayloadFormat,Serializer> serializers;
+	private final PayloadFormat defaultFormat;
+	private final Map<String,PayloadFormat> bucketFormats;
+
+	public PayloadFormats(Map<PayloadFormat, Serializer> serializers, PayloadFormat defaultFormat, Map<String, PayloadFormat> bucketFormats) {
+		if(!serializers.containsKey(defaultFormat) || !serializers.keySet().containsAll(bucketFormats.values())){
+			throw new IllegalArgumentException("Every configured format requires a serializer");
+		}
+		this.serializers = new EnumMap<>(serializers);
+		this.defaultFormat = defaultFormat;
+		this.bucketFormats = new HashMap<>(bucketFormats);
+	}
+
+	/**
+	 *
+	 * @return formats that read and write everything as JSON with the given serializer
+	 */
+	public static PayloadFormats json(Serializer serializer) {
+		return new PayloadFormats(Collections.singletonMap(PayloadFormat.JSON, serializer), PayloadFormat.JSON, Collections.emptyMap());
+	}
+
+	public PayloadFormat formatFor(String bucketId) {
+		PayloadFormat format = bucketFormats.get(bucketId);
+		return (format != null) ? format : defaultFormat;
+	}
+
+	/**
+	 *
+	 * @return the serializer new rows of this bucket are written with
+	 */
+	public Serializer writerFor(String bucketId) {
+		return serializers.get(formatFor(bucketId));
+	}
+
+	/**
+	 *
+	 * @param formatId the value of the FORMAT column
+	 * @return the serializer able to read that row
+	 */
+	public Serializer readerFor(int formatId) {
+		PayloadFormat format = null;
+		try {
+			format = PayloadFormat.valueOf(formatId);
+		}
+		catch (IllegalArgumentException e) {
+			throw new StorageException(e.getMessage(), e);
+		}
+		Serializer serializer = serializers.get(format);
+		if(serializer == null){
+			throw new StorageException("No serializer configured for payload format " + format);
+		}
+		return serializer;
+	}
+}
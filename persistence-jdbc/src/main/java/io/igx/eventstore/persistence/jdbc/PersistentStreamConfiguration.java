@@ -24,11 +24,19 @@
 
 package io.igx.eventstore.persistence.jdbc;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 import javax.sql.DataSource;
 
 import io.igx.eventstore.persistence.PersistentStream;
+import io.igx.eventstore.persistence.jdbc.properties.JDBCPersistenceProperties;
 import io.igx.eventstore.persistence.jdbc.properties.SQLCommands;
+import io.igx.eventstore.serializers.EventTypeRegistry;
+import io.igx.eventstore.serializers.compression.CompressingSerializer;
+import io.igx.eventstore.serializers.compression.CompressionMetrics;
 import io.igx.eventstore.serializers.json.JacksonSerializer;
+import io.igx.eventstore.serializers.smile.SmileSerializer;
 import io.igx.eventstore.serializers.Serializer;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,14 +44,16 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.support.lob.DefaultLobHandler;
 import org.springframework.jdbc.support.lob.LobHandler;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * @author Vinicius Carvalho
  */
 @Configuration
-@EnableConfigurationProperties({SQLCommands.class})
+@EnableConfigurationProperties({SQLCommands.class, JDBCPersistenceProperties.class})
 public class PersistentStreamConfiguration {
 
 
@@ -53,6 +63,9 @@ public class PersistentStreamConfiguration {
 	@Autowired
 	private SQLCommands sqlCommands;
 
+	@Autowired
+	private JDBCPersistenceProperties persistenceProperties;
+
 	@Bean
 	public JdbcTemplate jdbcTemplate(){
 		return new JdbcTemplate(dataSource);
@@ -63,13 +76,43 @@ public class PersistentStreamConfiguration {
 		return new DefaultLobHandler();
 	}
 
+	@Bean
+	public TransactionTemplate eventStoreTransactionTemplate(){
+		return new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+	}
+
 	@Bean
 	public PersistentStream persistentStream(){
-		return new JDBCPersistentStream(jdbcTemplate(), sqlCommands,eventSerializer(),lobHandler());
+		return new JDBCPersistentStream(jdbcTemplate(), eventStoreTransactionTemplate(), sqlCommands, persistenceProperties, payloadFormats(),lobHandler());
 	}
 
 	@Bean
 	public Serializer eventSerializer(){
-		return new JacksonSerializer();
+		return new JacksonSerializer(eventTypeRegistry());
+	}
+
+	@Bean
+	public PayloadFormats payloadFormats(){
+		Map<PayloadFormat,Serializer> serializers = new EnumMap<>(PayloadFormat.class);
+		serializers.put(PayloadFormat.JSON, compressing(eventSerializer()));
+		serializers.put(PayloadFormat.SMILE, compressing(new SmileSerializer(eventTypeRegistry())));
+		return new PayloadFormats(serializers, persistenceProperties.getFormat(), persistenceProperties.getBucketFormats());
+	}
+
+	@Bean
+	public CompressionMetrics compressionMetrics(){
+		return new CompressionMetrics();
+	}
+
+	@Bean
+	public EventTypeRegistry eventTypeRegistry(){
+		EventTypeRegistry registry = new EventTypeRegistry();
+		persistenceProperties.getTypeAliases().forEach(registry::register);
+		return registry;
+	}
+
+	private Serializer compressing(Serializer serializer){
+		JDBCPersistenceProperties.PayloadCompression compression = persistenceProperties.getCompression();
+		return new CompressingSerializer(serializer, compression.getAlgorithm(), compression.getThreshold(), compressionMetrics());
 	}
 }
@@ -0,0 +1,285 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @author Vinicius Carvalho
+ * Publishes the rows of a query as they are requested. The statement is only executed on the first request, rows are
+ * read from the result set to satisfy the outstanding demand and, while there is none, read ahead up to a number of
+ * rows and of bytes. Once that buffer is full nothing more is read, so a slow subscriber bounds the memory of the read
+ * instead of the size of the result. Rows are read and delivered on the executor, never on the thread calling
+ * {@link Subscription#request(long)}.
+ * Subscribing inside a transaction reads on the connection of that transaction instead, so the rows include its own
+ * uncommitted writes. Those rows are read and delivered on the thread requesting them, which must be the thread of the
+ * transaction, and the subscription must be drained or cancelled before the transaction completes.
+ * The connection stays open until the result set is exhausted, the subscription cancelled or an error signalled.
+ */
+public class ResultSetPublisher<T> implements Publisher<T> {
+
+	private Logger logger = LoggerFactory.getLogger(ResultSetPublisher.class);
+
+	private final JdbcTemplate template;
+	private final PreparedStatementCreator statementCreator;
+	private final PreparedStatementSetter statementSetter;
+	private final RowMapper<T> rowMapper;
+	private final ToLongFunction<? super T> weigher;
+	private final int prefetch;
+	private final long maxBufferedBytes;
+	private final Executor executor;
+
+	/**
+	 *
+	 * @param weigher size of a row, in bytes, counted against maxBufferedBytes
+	 * @param prefetch maximum number of rows read ahead of the demand
+	 * @param maxBufferedBytes maximum size of the rows read ahead of the demand
+	 * @param executor runs the reads and delivers the rows, one task at a time per subscription
+	 */
+	public ResultSetPublisher(JdbcTemplate template, PreparedStatementCreator statementCreator, PreparedStatementSetter statementSetter, RowMapper<T> rowMapper,
+			ToLongFunction<? super T> weigher, int prefetch, long maxBufferedBytes, Executor executor) {
+		this.template = template;
+		this.statementCreator = statementCreator;
+		this.statementSetter = statementSetter;
+		this.rowMapper = rowMapper;
+		this.weigher = weigher;
+		this.prefetch = prefetch;
+		this.maxBufferedBytes = maxBufferedBytes;
+		this.executor = executor;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+		ConnectionHolder transaction = null;
+		if(TransactionSynchronizationManager.isActualTransactionActive()){
+			transaction = (ConnectionHolder) TransactionSynchronizationManager.getResource(template.getDataSource());
+		}
+		subscriber.onSubscribe(new ResultSetSubscription(subscriber, transaction));
+	}
+
+	private final class ResultSetSubscription implements Subscription, Runnable {
+
+		private final Subscriber<? super T> subscriber;
+		private final ConnectionHolder transaction;
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private final ArrayDeque<T> buffer = new ArrayDeque<>();
+		private volatile boolean cancelled;
+		private volatile Throwable invalidRequest;
+		private long bufferedBytes;
+		private boolean exhausted;
+		private boolean terminated;
+		private int rowNum;
+		private Connection connection;
+		private PreparedStatement statement;
+		private ResultSet resultSet;
+
+		ResultSetSubscription(Subscriber<? super T> subscriber, ConnectionHolder transaction) {
+			this.subscriber = subscriber;
+			this.transaction = transaction;
+		}
+
+		@Override
+		public void request(long n) {
+			if(n <= 0){
+				invalidRequest = new IllegalArgumentException("Rule 3.9: request must be positive, was " + n);
+			}
+			else {
+				long current, next;
+				do {
+					current = requested.get();
+					next = current + n < 0 ? Long.MAX_VALUE : current + n;
+				} while (!requested.compareAndSet(current, next));
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		private void schedule() {
+			if(wip.getAndIncrement() == 0){
+				if(transaction != null){
+					run();
+				}
+				else {
+					executor.execute(this);
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				drain();
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void drain() {
+			if(terminated)
+				return;
+			try {
+				if(cancelled || invalidRequest != null){
+					terminate(invalidRequest);
+					return;
+				}
+				if(resultSet == null && !exhausted){
+					open();
+				}
+				long demand = requested.get();
+				long emitted = 0;
+				while (emitted != demand && !cancelled) {
+					if(buffer.isEmpty() && !readRow())
+						break;
+					T row = buffer.poll();
+					bufferedBytes -= weigher.applyAsLong(row);
+					subscriber.onNext(row);
+					emitted++;
+				}
+				if(emitted != 0 && demand != Long.MAX_VALUE){
+					requested.addAndGet(-emitted);
+				}
+				if(cancelled){
+					terminate(null);
+					return;
+				}
+				while (buffer.size() < prefetch && bufferedBytes < maxBufferedBytes && requested.get() == 0 && !cancelled && readRow()) {
+					// reading ahead of the next request
+				}
+				if(exhausted && buffer.isEmpty()){
+					terminate(null);
+					subscriber.onComplete();
+				}
+			}
+			catch (SQLException e) {
+				terminate(template.getExceptionTranslator().translate("Reading rows on demand", null, e));
+			}
+			catch (Throwable t) {
+				terminate(t);
+			}
+		}
+
+		private void open() throws SQLException {
+			if(transaction != null){
+				transaction.requested();
+				connection = transaction.getConnection();
+			}
+			else {
+				connection = DataSourceUtils.getConnection(template.getDataSource());
+			}
+			statement = statementCreator.createPreparedStatement(connection);
+			if(statementSetter != null){
+				statementSetter.setValues(statement);
+			}
+			resultSet = statement.executeQuery();
+		}
+
+		private boolean readRow() throws SQLException {
+			if(exhausted)
+				return false;
+			if(!resultSet.next()){
+				exhausted = true;
+				// the buffered rows no longer need the connection
+				release();
+				return false;
+			}
+			T row = rowMapper.mapRow(resultSet, rowNum++);
+			bufferedBytes += weigher.applyAsLong(row);
+			buffer.add(row);
+			return true;
+		}
+
+		private void terminate(Throwable error) {
+			terminated = true;
+			buffer.clear();
+			release();
+			if(error != null){
+				subscriber.onError(error);
+			}
+		}
+
+		private void release() {
+			if(statement != null && !exhausted){
+				try {
+					// a streaming result set would otherwise be read to its end when closed
+					statement.cancel();
+				}
+				catch (SQLException e) {
+					logger.debug("Could not cancel an abandoned query", e);
+				}
+			}
+			closeQuietly(resultSet);
+			closeQuietly(statement);
+			if(transaction != null && connection != null){
+				transaction.released();
+			}
+			else if(connection != null){
+				DataSourceUtils.releaseConnection(connection, template.getDataSource());
+			}
+			resultSet = null;
+			statement = null;
+			connection = null;
+		}
+
+		private void closeQuietly(AutoCloseable closeable) {
+			if(closeable == null)
+				return;
+			try {
+				closeable.close();
+			}
+			catch (Exception e) {
+				logger.debug("Could not close JDBC resource", e);
+			}
+		}
+	}
+}
@@ -38,15 +38,19 @@ import org.springframework.jdbc.core.RowMapper;
  */
 public class SnapshotRowMapper<T> implements RowMapper<Snapshot<T>> {
 
-	private Serializer serializer;
+	private PayloadFormats payloadFormats;
 	private Class<T> type;
 	public SnapshotRowMapper(Serializer serializer, Class<T> type) {
-		this.serializer = serializer;
+		this(PayloadFormats.json(serializer), type);
+	}
+
+	public SnapshotRowMapper(PayloadFormats payloadFormats, Class<T> type) {
+		this.payloadFormats = payloadFormats;
 		this.type = type;
 	}
 
 	@Override
 	public Snapshot<T> mapRow(ResultSet rs, int rowNum) throws SQLException {
-		return new BaseSnapshot<>(rs.getString("BUCKET_ID"),rs.getString("STREAM_ID"),rs.getLong("STREAM_REVISION"), (T) serializer.deserialize(rs.getBytes("PAYLOAD"),type));
+		return new BaseSnapshot<>(rs.getString("BUCKET_ID"),rs.getString("STREAM_ID"),rs.getLong("STREAM_REVISION"), (T) payloadFormats.readerFor(rs.getInt("FORMAT")).deserialize(rs.getBytes("PAYLOAD"),type));
 	}
 }
@@ -37,6 +37,11 @@ import org.springframework.jdbc.core.RowMapper;
 public class StreamHeadRowMapper implements RowMapper<StreamHead> {
 	@Override
 	public StreamHead mapRow(ResultSet rs, int rowNum) throws SQLException {
-		return new StreamHead(rs.getString("BUCKET_ID"),rs.getString("STREAM_ID_ORIGINAL"),rs.getInt("STREAM_REVISION"), rs.getInt("SNAPSHOT_REVISION"));
+		return new StreamHead(rs.getString("BUCKET_ID"),
+				rs.getString("STREAM_ID_ORIGINAL"),
+				rs.getInt("STREAM_REVISION"),
+				rs.getLong("COMMIT_SEQUENCE"),
+				String.valueOf(rs.getLong("CHECKPOINT_NUMBER")),
+				rs.getInt("SNAPSHOT_REVISION"));
 	}
 }
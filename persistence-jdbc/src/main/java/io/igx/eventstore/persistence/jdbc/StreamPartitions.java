@@ -0,0 +1,306 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.persistence.LazyCommit;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * @author Vinicius Carvalho
+ * Splits a single read of commits into partitions by the hash of their stream id, so every commit of a stream lands in
+ * the same partition, in the order of the source. The source is subscribed once every partition has been subscribed.
+ * At most {@code window} commits are requested from the source ahead of the ones delivered, across all partitions, so
+ * a partition that is not consumed eventually holds back the others but never the memory of the read.
+ * Each partition deserializes and delivers its commits on the executor, one task at a time, so the partitions are
+ * consumed concurrently with each other and with the read.
+ */
+public class StreamPartitions {
+
+	private final Publisher<Commit> source;
+	private final Executor executor;
+	private final int window;
+	private final int replenish;
+	private final List<Partition> partitions;
+	private final AtomicInteger subscribed = new AtomicInteger();
+	private final AtomicInteger active;
+	private final AtomicInteger consumed = new AtomicInteger();
+	private final SourceSubscriber sourceSubscriber = new SourceSubscriber();
+
+	/**
+	 *
+	 * @param source the publisher of the commits, read from storage with their headers and events still serialized
+	 * @param partitions number of partitions
+	 * @param window maximum number of commits requested from the source and not yet delivered
+	 * @param executor runs the deserialization and delivery of each partition
+	 */
+	public StreamPartitions(Publisher<Commit> source, int partitions, int window, Executor executor) {
+		if(partitions < 1)
+			throw new IllegalArgumentException("Number of partitions must be at least 1");
+		if(window < 1)
+			throw new IllegalArgumentException("Window must be at least 1");
+		this.source = source;
+		this.executor = executor;
+		this.window = window;
+		this.replenish = Math.max(1, window / 2);
+		this.active = new AtomicInteger(partitions);
+		List<Partition> list = new ArrayList<>(partitions);
+		for (int i = 0; i < partitions; i++) {
+			list.add(new Partition());
+		}
+		this.partitions = Collections.unmodifiableList(list);
+	}
+
+	/**
+	 *
+	 * @return a publisher per partition, each accepting a single subscriber
+	 */
+	public List<? extends Publisher<Commit>> getPartitions() {
+		return partitions;
+	}
+
+	/**
+	 * The partition of a stream, stable across runs as {@link String#hashCode()} is specified.
+	 */
+	static int partitionOf(String streamId, int partitions) {
+		return Math.floorMod(streamId.hashCode(), partitions);
+	}
+
+	private void delivered(int count) {
+		int total = consumed.addAndGet(count);
+		if(total >= replenish && consumed.compareAndSet(total, 0)){
+			sourceSubscriber.request(total);
+		}
+	}
+
+	private final class SourceSubscriber implements Subscriber<Commit> {
+
+		private Subscription upstream;
+		private volatile boolean done;
+		private volatile Throwable error;
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			synchronized (this) {
+				upstream = subscription;
+			}
+			request(window);
+		}
+
+		@Override
+		public void onNext(Commit commit) {
+			Partition partition = partitions.get(partitionOf(commit.getStreamId(), partitions.size()));
+			if(partition.cancelled){
+				delivered(1);
+				return;
+			}
+			partition.commits.offer(commit);
+			partition.schedule();
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			error = t;
+			done = true;
+			partitions.forEach(Partition::schedule);
+		}
+
+		@Override
+		public void onComplete() {
+			done = true;
+			partitions.forEach(Partition::schedule);
+		}
+
+		// the partitions call in from their own tasks, the source expects one call at a time
+		synchronized void request(long n) {
+			if(active.get() == 0){
+				upstream.cancel();
+			}
+			else {
+				upstream.request(n);
+			}
+		}
+
+		synchronized void cancel() {
+			if(upstream != null){
+				upstream.cancel();
+			}
+		}
+	}
+
+	private final class Partition implements Publisher<Commit>, Subscription, Runnable {
+
+		private final Queue<Commit> commits = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean taken = new AtomicBoolean();
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private volatile Subscriber<? super Commit> subscriber;
+		private volatile boolean cancelled;
+		private volatile Throwable invalidRequest;
+		private boolean terminated;
+
+		@Override
+		public void subscribe(Subscriber<? super Commit> subscriber) {
+			if(!taken.compareAndSet(false, true)){
+				subscriber.onSubscribe(new Subscription() {
+					@Override
+					public void request(long n) { }
+
+					@Override
+					public void cancel() { }
+				});
+				subscriber.onError(new IllegalStateException("A partition can only be subscribed once"));
+				return;
+			}
+			this.subscriber = subscriber;
+			subscriber.onSubscribe(this);
+			if(subscribed.incrementAndGet() == partitions.size()){
+				source.subscribe(sourceSubscriber);
+			}
+		}
+
+		@Override
+		public void request(long n) {
+			if(n <= 0){
+				invalidRequest = new IllegalArgumentException("Rule 3.9: request must be positive, was " + n);
+			}
+			else {
+				long current, next;
+				do {
+					current = requested.get();
+					next = current + n < 0 ? Long.MAX_VALUE : current + n;
+				} while (!requested.compareAndSet(current, next));
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		private void schedule() {
+			if(wip.getAndIncrement() == 0){
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				drain();
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void drain() {
+			if(terminated){
+				// commits offered while the partition was being cancelled
+				discard();
+				return;
+			}
+			if(cancelled || invalidRequest != null){
+				terminate(invalidRequest);
+				return;
+			}
+			long demand = requested.get();
+			long emitted = 0;
+			while (emitted != demand && !cancelled) {
+				Commit commit = commits.poll();
+				if(commit == null)
+					break;
+				try {
+					if(commit instanceof LazyCommit){
+						((LazyCommit) commit).deserialize();
+					}
+				}
+				catch (Throwable t) {
+					delivered(1);
+					terminate(t);
+					return;
+				}
+				subscriber.onNext(commit);
+				emitted++;
+				delivered(1);
+			}
+			if(emitted != 0 && demand != Long.MAX_VALUE){
+				requested.addAndGet(-emitted);
+			}
+			if(cancelled){
+				terminate(null);
+				return;
+			}
+			if(sourceSubscriber.done && commits.isEmpty()){
+				terminated = true;
+				if(sourceSubscriber.error != null){
+					subscriber.onError(sourceSubscriber.error);
+				}
+				else {
+					subscriber.onComplete();
+				}
+			}
+		}
+
+		/**
+		 * A partition that stops early gives back its share of the window, the source is cancelled with the last one.
+		 */
+		private void terminate(Throwable failure) {
+			terminated = true;
+			cancelled = true;
+			if(active.decrementAndGet() == 0){
+				sourceSubscriber.cancel();
+			}
+			discard();
+			if(failure != null){
+				subscriber.onError(failure);
+			}
+		}
+
+		private void discard() {
+			int dropped = 0;
+			while (commits.poll() != null) {
+				dropped++;
+			}
+			if(dropped != 0 && active.get() != 0){
+				delivered(dropped);
+			}
+		}
+	}
+}
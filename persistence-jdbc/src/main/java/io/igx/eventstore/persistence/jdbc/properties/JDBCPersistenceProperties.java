@@ -0,0 +1,280 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc.properties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.igx.eventstore.persistence.jdbc.PayloadFormat;
+import io.igx.eventstore.serializers.compression.Compression;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author Vinicius Carvalho
+ * Tuning knobs of the JDBC persistence engine. Everything defaults to the behaviour of a plain, one statement per
+ * call engine.
+ */
+@ConfigurationProperties(prefix = "eventstore.jdbc")
+public class JDBCPersistenceProperties {
+
+	private GroupCommit groupCommit = new GroupCommit();
+
+	/**
+	 * Short names written instead of the class name of events, keyed by alias with the event class name as value.
+	 */
+	private Map<String,String> typeAliases = new HashMap<>();
+
+	/**
+	 * Format new commits and snapshots are written with, unless their bucket is listed in bucketFormats.
+	 */
+	private PayloadFormat format = PayloadFormat.JSON;
+
+	/**
+	 * Format per bucket, rows already stored are read with the format they were written with.
+	 */
+	private Map<String,PayloadFormat> bucketFormats = new HashMap<>();
+
+	private PayloadCompression compression = new PayloadCompression();
+
+	private Reads reads = new Reads();
+
+	public GroupCommit getGroupCommit() {
+		return groupCommit;
+	}
+
+	public void setGroupCommit(GroupCommit groupCommit) {
+		this.groupCommit = groupCommit;
+	}
+
+	public Map<String, String> getTypeAliases() {
+		return typeAliases;
+	}
+
+	public void setTypeAliases(Map<String, String> typeAliases) {
+		this.typeAliases = typeAliases;
+	}
+
+	public PayloadFormat getFormat() {
+		return format;
+	}
+
+	public void setFormat(PayloadFormat format) {
+		this.format = format;
+	}
+
+	public Map<String, PayloadFormat> getBucketFormats() {
+		return bucketFormats;
+	}
+
+	public void setBucketFormats(Map<String, PayloadFormat> bucketFormats) {
+		this.bucketFormats = bucketFormats;
+	}
+
+	public PayloadCompression getCompression() {
+		return compression;
+	}
+
+	public void setCompression(PayloadCompression compression) {
+		this.compression = compression;
+	}
+
+	public Reads getReads() {
+		return reads;
+	}
+
+	public void setReads(Reads reads) {
+		this.reads = reads;
+	}
+
+	public static class GroupCommit {
+
+		/**
+		 * Queues commit attempts from all threads and writes them as a single JDBC batch.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Maximum number of attempts flushed in one batch.
+		 */
+		private int maxBatchSize = 64;
+
+		/**
+		 * Maximum time the first attempt of a batch waits for others to join it.
+		 */
+		private long maxLingerMillis = 2;
+
+		/**
+		 * Maximum time a caller waits for the batch its attempt joined to be flushed.
+		 */
+		private long maxWaitMillis = 30000;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getMaxBatchSize() {
+			return maxBatchSize;
+		}
+
+		public void setMaxBatchSize(int maxBatchSize) {
+			this.maxBatchSize = maxBatchSize;
+		}
+
+		public long getMaxLingerMillis() {
+			return maxLingerMillis;
+		}
+
+		public void setMaxLingerMillis(long maxLingerMillis) {
+			this.maxLingerMillis = maxLingerMillis;
+		}
+
+		public long getMaxWaitMillis() {
+			return maxWaitMillis;
+		}
+
+		public void setMaxWaitMillis(long maxWaitMillis) {
+			this.maxWaitMillis = maxWaitMillis;
+		}
+	}
+
+	public static class PayloadCompression {
+
+		/**
+		 * Algorithm applied to commit and snapshot blobs written from now on, blobs already stored are always readable.
+		 */
+		private Compression algorithm = Compression.NONE;
+
+		/**
+		 * Minimum size, in bytes, of a serialized blob before it gets compressed.
+		 */
+		private int threshold = 1024;
+
+		public Compression getAlgorithm() {
+			return algorithm;
+		}
+
+		public void setAlgorithm(Compression algorithm) {
+			this.algorithm = algorithm;
+		}
+
+		public int getThreshold() {
+			return threshold;
+		}
+
+		public void setThreshold(int threshold) {
+			this.threshold = threshold;
+		}
+	}
+
+	public static class Reads {
+
+		/**
+		 * Maximum number of rows read ahead of the demand of a subscriber.
+		 */
+		private int prefetch = 256;
+
+		/**
+		 * Maximum size, in bytes, of the serialized commits read ahead of the demand of a subscriber.
+		 */
+		private long maxBufferedBytes = 8 * 1024 * 1024;
+
+		/**
+		 * Number of commits per query when reading after a checkpoint, 0 streams the whole read through one
+		 * connection instead.
+		 */
+		private int pageSize = 0;
+
+		/**
+		 * Number of pages queried ahead of the page being delivered, 0 queries a page only once the previous one
+		 * has been delivered.
+		 */
+		private int readAheadPages = 1;
+
+		/**
+		 * Number of times a page failing on a transient or connection error is read again.
+		 */
+		private int maxPageRetries = 3;
+
+		/**
+		 * Number of threads deserializing the commits read, ahead of the subscriber and in checkpoint order, 0 leaves
+		 * each commit to be deserialized when first inspected.
+		 */
+		private int deserializerThreads = 0;
+
+		public int getPrefetch() {
+			return prefetch;
+		}
+
+		public void setPrefetch(int prefetch) {
+			this.prefetch = prefetch;
+		}
+
+		public long getMaxBufferedBytes() {
+			return maxBufferedBytes;
+		}
+
+		public void setMaxBufferedBytes(long maxBufferedBytes) {
+			this.maxBufferedBytes = maxBufferedBytes;
+		}
+
+		public int getPageSize() {
+			return pageSize;
+		}
+
+		public void setPageSize(int pageSize) {
+			this.pageSize = pageSize;
+		}
+
+		public int getReadAheadPages() {
+			return readAheadPages;
+		}
+
+		public void setReadAheadPages(int readAheadPages) {
+			this.readAheadPages = readAheadPages;
+		}
+
+		public int getMaxPageRetries() {
+			return maxPageRetries;
+		}
+
+		public void setMaxPageRetries(int maxPageRetries) {
+			this.maxPageRetries = maxPageRetries;
+		}
+
+		public int getDeserializerThreads() {
+			return deserializerThreads;
+		}
+
+		public void setDeserializerThreads(int deserializerThreads) {
+			this.deserializerThreads = deserializerThreads;
+		}
+	}
+}
@@ -46,10 +46,57 @@ public class SQLCommands {
 	private String dropTables;
 	private String commitsFromCheckpoint;
 	private String commitsFromBucketAndCheckpoint;
+	private String commitsFromCheckpointPage;
+	private String commitsFromBucketAndCheckpointPage;
 	private String deleteStream;
 	private String persistCommit;
 	private String currentStreamRevision;
 	private String currentCommitSequence;
+	private String persistStreamHead;
+	private String streamHead;
+	private String streamHeadForUpdate;
+	private String updateSnapshotRevision;
+	private String commitHeadersFromStartingRevision;
+
+	public String getCommitHeadersFromStartingRevision() {
+		return commitHeadersFromStartingRevision;
+	}
+
+	public void setCommitHeadersFromStartingRevision(String commitHeadersFromStartingRevision) {
+		this.commitHeadersFromStartingRevision = commitHeadersFromStartingRevision;
+	}
+
+	public String getPersistStreamHead() {
+		return persistStreamHead;
+	}
+
+	public void setPersistStreamHead(String persistStreamHead) {
+		this.persistStreamHead = persistStreamHead;
+	}
+
+	public String getStreamHead() {
+		return streamHead;
+	}
+
+	public void setStreamHead(String streamHead) {
+		this.streamHead = streamHead;
+	}
+
+	public String getStreamHeadForUpdate() {
+		return streamHeadForUpdate;
+	}
+
+	public void setStreamHeadForUpdate(String streamHeadForUpdate) {
+		this.streamHeadForUpdate = streamHeadForUpdate;
+	}
+
+	public String getUpdateSnapshotRevision() {
+		return updateSnapshotRevision;
+	}
+
+	public void setUpdateSnapshotRevision(String updateSnapshotRevision) {
+		this.updateSnapshotRevision = updateSnapshotRevision;
+	}
 
 	public String getCurrentCommitSequence() {
 		return currentCommitSequence;
@@ -194,4 +241,20 @@ public class SQLCommands {
 	public void setDeleteStream(String deleteStream) {
 		this.deleteStream = deleteStream;
 	}
+
+	public String getCommitsFromCheckpointPage() {
+		return commitsFromCheckpointPage;
+	}
+
+	public void setCommitsFromCheckpointPage(String commitsFromCheckpointPage) {
+		this.commitsFromCheckpointPage = commitsFromCheckpointPage;
+	}
+
+	public String getCommitsFromBucketAndCheckpointPage() {
+		return commitsFromBucketAndCheckpointPage;
+	}
+
+	public void setCommitsFromBucketAndCheckpointPage(String commitsFromBucketAndCheckpointPage) {
+		this.commitsFromBucketAndCheckpointPage = commitsFromBucketAndCheckpointPage;
+	}
 }
@@ -12,6 +12,7 @@ CREATE TABLE IF NOT EXISTS COMMITS
     DISPATCHED bit NOT NULL DEFAULT 0,
     HEADERS blob NULL,
     PAYLOAD mediumblob NOT NULL,
+    FORMAT tinyint NOT NULL DEFAULT 0,
     PRIMARY KEY (CHECKPOINT_NUMBER)
 
 );
@@ -23,6 +24,14 @@ CREATE UNIQUE INDEX IX_Commits_Revisions ON COMMITS (BUCKET_ID, STREAM_ID, STREA
 CREATE INDEX IX_Commits_Dispatched ON COMMITS (DISPATCHED);
 CREATE INDEX IX_Commits_Stamp ON COMMITS (COMMIT_STAMP);
 
+-- Tables created before FORMAT existed get the column, its default marking their rows as JSON
+SET @ADD_FORMAT = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE COMMITS ADD COLUMN FORMAT tinyint NOT NULL DEFAULT 0', 'DO 0')
+                     FROM INFORMATION_SCHEMA.COLUMNS
+                    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'COMMITS' AND COLUMN_NAME = 'FORMAT');
+PREPARE ADD_FORMAT FROM @ADD_FORMAT;
+EXECUTE ADD_FORMAT;
+DEALLOCATE PREPARE ADD_FORMAT;
+
 
 CREATE TABLE IF NOT EXISTS SNAPSHOTS
 (
@@ -30,5 +39,34 @@ CREATE TABLE IF NOT EXISTS SNAPSHOTS
     STREAM_ID varchar(40) charset utf8 NOT NULL,
     STREAM_REVISION int NOT NULL CHECK (SNAPSHOTS.STREAM_REVISION > 0),
     PAYLOAD blob NOT NULL,
+    FORMAT tinyint NOT NULL DEFAULT 0,
     CONSTRAINT PK_Snapshots PRIMARY KEY (BUCKET_ID, STREAM_ID, STREAM_REVISION)
-);
\ No newline at end of file
+);
+
+SET @ADD_FORMAT = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE SNAPSHOTS ADD COLUMN FORMAT tinyint NOT NULL DEFAULT 0', 'DO 0')
+                     FROM INFORMATION_SCHEMA.COLUMNS
+                    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'SNAPSHOTS' AND COLUMN_NAME = 'FORMAT');
+PREPARE ADD_FORMAT FROM @ADD_FORMAT;
+EXECUTE ADD_FORMAT;
+DEALLOCATE PREPARE ADD_FORMAT;
+
+
+CREATE TABLE IF NOT EXISTS STREAM_HEADS
+(
+    BUCKET_ID varchar(64) charset utf8 NOT NULL,
+    STREAM_ID varchar(64) charset utf8 NOT NULL,
+    STREAM_ID_ORIGINAL varchar(1000) charset utf8 NOT NULL,
+    HEAD_REVISION int NOT NULL,
+    HEAD_COMMIT_SEQUENCE int NOT NULL,
+    CHECKPOINT_NUMBER bigint NOT NULL,
+    SNAPSHOT_REVISION int NOT NULL DEFAULT 0,
+    CONSTRAINT PK_StreamHeads PRIMARY KEY (BUCKET_ID, STREAM_ID)
+);
+
+INSERT INTO STREAM_HEADS
+    ( BUCKET_ID, STREAM_ID, STREAM_ID_ORIGINAL, HEAD_REVISION, HEAD_COMMIT_SEQUENCE, CHECKPOINT_NUMBER, SNAPSHOT_REVISION )
+SELECT C.BUCKET_ID, C.STREAM_ID, MAX(C.STREAM_ID_ORIGINAL), MAX(C.STREAM_REVISION), MAX(C.COMMIT_SEQUENCE), MAX(C.CHECKPOINT_NUMBER),
+       COALESCE((SELECT MAX(S.STREAM_REVISION) FROM SNAPSHOTS AS S WHERE S.BUCKET_ID = C.BUCKET_ID AND S.STREAM_ID = C.STREAM_ID), 0)
+  FROM COMMITS AS C
+ WHERE NOT EXISTS ( SELECT * FROM STREAM_HEADS )
+ GROUP BY C.BUCKET_ID, C.STREAM_ID;
@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.persistence.BaseCommit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * @author Vinicius Carvalho
+ */
+public class CheckpointPagePublisherTests {
+
+	private static final int COMMITS = 25;
+	private static final int PAGE_SIZE = 4;
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@After
+	public void shutdown(){
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void transientPageFailureResumes() throws Exception {
+		List<Commit> stored = new ArrayList<>();
+		for (long checkpoint = 1; checkpoint <= COMMITS; checkpoint++) {
+			stored.add(new BaseCommit("1", "Account", checkpoint, UUID.randomUUID(), checkpoint, System.currentTimeMillis(), String.valueOf(checkpoint), Collections.emptyMap(), Collections.emptyList()));
+		}
+		List<Long> queried = new CopyOnWriteArrayList<>();
+		JdbcTemplate template = new JdbcTemplate() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public <T> List<T> query(String sql, Object[] args, RowMapper<T> rowMapper) throws DataAccessException {
+				long after = (Long) args[args.length - 2];
+				int limit = (Integer) args[args.length - 1];
+				queried.add(after);
+				if(after == 2 * PAGE_SIZE && Collections.frequency(queried, after) == 1)
+					throw new TransientDataAccessResourceException("Connection reset while reading after " + after);
+				List<T> page = new ArrayList<>();
+				for (Commit commit : stored) {
+					if(Long.valueOf(commit.getCheckpointToken()) > after && page.size() < limit)
+						page.add((T) commit);
+				}
+				return page;
+			}
+		};
+		CheckpointPagePublisher publisher = new CheckpointPagePublisher(template, "SELECT", new Object[] {"Account"}, 0L, null, PAGE_SIZE, 1, 3, executor);
+
+		List<Long> received = new CopyOnWriteArrayList<>();
+		List<Throwable> errors = new CopyOnWriteArrayList<>();
+		CountDownLatch completed = new CountDownLatch(1);
+		publisher.subscribe(new Subscriber<Commit>() {
+			private Subscription subscription;
+
+			@Override
+			public void onSubscribe(Subscription s) {
+				subscription = s;
+				s.request(3);
+			}
+
+			@Override
+			public void onNext(Commit commit) {
+				received.add(Long.valueOf(commit.getCheckpointToken()));
+				if(received.size() % 3 == 0){
+					subscription.request(3);
+				}
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				errors.add(t);
+				completed.countDown();
+			}
+
+			@Override
+			public void onComplete() {
+				completed.countDown();
+			}
+		});
+		Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+		Assert.assertTrue(errors.isEmpty());
+		List<Long> expected = new ArrayList<>();
+		for (long checkpoint = 1; checkpoint <= COMMITS; checkpoint++) {
+			expected.add(checkpoint);
+		}
+		Assert.assertEquals(expected, received);
+		Assert.assertEquals(2, Collections.frequency(queried, 2L * PAGE_SIZE));
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.CommitAttempt;
+import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.persistence.jdbc.properties.JDBCPersistenceProperties;
+import io.igx.eventstore.persistence.jdbc.properties.SQLCommands;
+import io.igx.eventstore.serializers.Serializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.Flux;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.lob.LobHandler;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * @author Vinicius Carvalho
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(JDBCPersistentApplication.class)
+public class CheckpointReadTests extends AbstractEventTests {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private SQLCommands sqlCommands;
+
+	@Autowired
+	private Serializer serializer;
+
+	@Autowired
+	private LobHandler lobHandler;
+
+	private JDBCPersistentStream persistentStream;
+
+	@Before
+	public void setup(){
+		JDBCPersistenceProperties properties = new JDBCPersistenceProperties();
+		properties.getReads().setPageSize(3);
+		persistentStream = new JDBCPersistentStream(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())), sqlCommands, properties, serializer, lobHandler);
+		persistentStream.purge();
+		for (int i = 1; i <= 10; i++) {
+			String bucketId = (i % 2 == 0) ? "Account" : "Sensor";
+			persistentStream.commit(new CommitAttempt(bucketId,String.valueOf(i),1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(i,1000.0)))));
+		}
+	}
+
+	@After
+	public void close(){
+		persistentStream.close();
+	}
+
+	@Test
+	public void pagedCheckpointReads() throws Exception {
+		List<Commit> commits = persistentStream.from("0").toList().get();
+		Assert.assertEquals(10, commits.size());
+		for (int i = 1; i < commits.size(); i++) {
+			Assert.assertTrue(Long.valueOf(commits.get(i - 1).getCheckpointToken()) < Long.valueOf(commits.get(i).getCheckpointToken()));
+		}
+		List<Commit> accounts = persistentStream.from("Account", "0").toList().get();
+		Assert.assertEquals(5, accounts.size());
+		List<Commit> resumed = persistentStream.from(commits.get(3).getCheckpointToken()).toList().get();
+		Assert.assertEquals(6, resumed.size());
+		Assert.assertEquals(commits.get(4).getCheckpointToken(), resumed.get(0).getCheckpointToken());
+	}
+
+	@Test
+	public void partitionedReplay() throws Exception {
+		for (int revision = 2; revision <= 4; revision++) {
+			for (String streamId : new String[]{"2", "4", "6"}) {
+				persistentStream.commit(new CommitAttempt("Account",streamId,(long)revision, UUID.randomUUID(),(long)revision,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(revision,10.0)))));
+			}
+		}
+		List<Flux<Commit>> partitions = persistentStream.from("Account", "0", 3);
+		Assert.assertEquals(3, partitions.size());
+		List<List<Commit>> received = new ArrayList<>();
+		CountDownLatch completed = new CountDownLatch(partitions.size());
+		for (Flux<Commit> partition : partitions) {
+			List<Commit> commits = new CopyOnWriteArrayList<>();
+			received.add(commits);
+			partition.subscribe(new Subscriber<Commit>() {
+				@Override
+				public void onSubscribe(Subscription s) {
+					s.request(Long.MAX_VALUE);
+				}
+
+				@Override
+				public void onNext(Commit commit) {
+					commits.add(commit);
+				}
+
+				@Override
+				public void onError(Throwable t) {
+				}
+
+				@Override
+				public void onComplete() {
+					completed.countDown();
+				}
+			});
+		}
+		Assert.assertTrue(completed.await(5, TimeUnit.SECONDS));
+		Map<String, Integer> partitionOfStream = new HashMap<>();
+		int total = 0;
+		for (int partition = 0; partition < received.size(); partition++) {
+			Map<String, Long> lastRevisions = new HashMap<>();
+			for (Commit commit : received.get(partition)) {
+				Integer previous = partitionOfStream.put(commit.getStreamId(), partition);
+				Assert.assertTrue(previous == null || previous == partition);
+				Long lastRevision = lastRevisions.put(commit.getStreamId(), commit.getStreamRevision());
+				Assert.assertTrue(lastRevision == null || lastRevision < commit.getStreamRevision());
+				total++;
+			}
+		}
+		Assert.assertEquals(14, total);
+		Assert.assertEquals(5, partitionOfStream.size());
+	}
+
+	@Test
+	public void readAheadPages() throws Exception {
+		List<Commit> commits = persistentStream.from("0").toList().get();
+		for (int readAhead : new int[]{0, 2, 5}) {
+			JDBCPersistenceProperties properties = new JDBCPersistenceProperties();
+			properties.getReads().setPageSize(3);
+			properties.getReads().setReadAheadPages(readAhead);
+			JDBCPersistentStream readAheadStream = new JDBCPersistentStream(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())), sqlCommands, properties, serializer, lobHandler);
+			try {
+				List<Commit> read = readAheadStream.from("0").toList().get();
+				Assert.assertEquals(commits.size(), read.size());
+				for (int i = 0; i < commits.size(); i++) {
+					Assert.assertEquals(commits.get(i).getCheckpointToken(), read.get(i).getCheckpointToken());
+				}
+			}
+			finally {
+				readAheadStream.close();
+			}
+		}
+	}
+
+	@Test
+	public void parallelDeserialization() throws Exception {
+		List<Commit> commits = persistentStream.from("0").toList().get();
+		for (int pageSize : new int[]{0, 3}) {
+			JDBCPersistenceProperties properties = new JDBCPersistenceProperties();
+			properties.getReads().setPageSize(pageSize);
+			properties.getReads().setDeserializerThreads(4);
+			properties.getReads().setPrefetch(2);
+			JDBCPersistentStream deserializingStream = new JDBCPersistentStream(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())), sqlCommands, properties, serializer, lobHandler);
+			try {
+				List<Commit> read = deserializingStream.from("0").toList().get();
+				Assert.assertEquals(commits.size(), read.size());
+				for (int i = 0; i < commits.size(); i++) {
+					Assert.assertEquals(commits.get(i).getCheckpointToken(), read.get(i).getCheckpointToken());
+					Assert.assertEquals(1, read.get(i).getEvents().size());
+				}
+			}
+			finally {
+				deserializingStream.close();
+			}
+		}
+	}
+}
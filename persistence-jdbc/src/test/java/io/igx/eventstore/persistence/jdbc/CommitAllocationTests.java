@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.UUID;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.CommitAttempt;
+import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.EventStream;
+import io.igx.eventstore.OptmisticEventStore;
+import io.igx.eventstore.OptmisticPipelineHook;
+import io.igx.eventstore.persistence.jdbc.properties.SQLCommands;
+import io.igx.eventstore.serializers.Serializer;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.lob.LobHandler;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * @author Vinicius Carvalho
+ * Guards the garbage produced by the commit path, from {@link EventStream#add(EventMessage)} through the store and
+ * its hooks down to the storage engine, with and without the serialization of the payload and headers the storage
+ * engine does before writing them. The JDBC statements themselves are left out: the garbage of the driver is not
+ * ours to guard and would only blur the figure.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(JDBCPersistentApplication.class)
+public class CommitAllocationTests extends AbstractEventTests {
+
+	/**
+	 * About 640 bytes per commit of two events and one header at the time of writing.
+	 */
+	private static final long MAX_BYTES_PER_COMMIT = 768;
+	/**
+	 * About 2.5 KiB per commit once its payload and headers are serialized.
+	 */
+	private static final long MAX_BYTES_PER_SERIALIZED_COMMIT = 3072;
+	private static final int WARMUP = 20000;
+	private static final int COMMITS = 20000;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private SQLCommands sqlCommands;
+
+	@Autowired
+	private Serializer serializer;
+
+	@Autowired
+	private LobHandler lobHandler;
+
+	@Autowired
+	private PayloadFormats payloadFormats;
+
+	private OptmisticEventStore eventStore;
+
+	private volatile boolean serializing;
+
+	@Before
+	public void setup(){
+		JDBCPersistentStream persistentStream = new JDBCPersistentStream(jdbcTemplate, sqlCommands, serializer, lobHandler){
+			@Override
+			public Commit commit(CommitAttempt attempt) {
+				if(serializing){
+					Serializer writer = payloadFormats.writerFor(attempt.getBucketId());
+					writer.serialize(attempt.getHeaders());
+					writer.serialize(attempt.getEvents());
+				}
+				return toCommit(attempt, attempt.getCommitSequence());
+			}
+		};
+		eventStore = new OptmisticEventStore(persistentStream, Collections.singletonList(new OptmisticPipelineHook()));
+	}
+
+	@Test
+	public void bytesAllocatedPerCommit() throws Exception{
+		long perCommit = bytesPerCommit();
+		Assert.assertTrue("Commit path allocates " + perCommit + " bytes per commit", perCommit <= MAX_BYTES_PER_COMMIT);
+	}
+
+	@Test
+	public void bytesAllocatedPerSerializedCommit() throws Exception{
+		serializing = true;
+		long perCommit = bytesPerCommit();
+		Assert.assertTrue("Serialized commit path allocates " + perCommit + " bytes per commit", perCommit <= MAX_BYTES_PER_SERIALIZED_COMMIT);
+	}
+
+	private long bytesPerCommit(){
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue("Thread allocation counters are not supported by this JVM",
+				threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported());
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		EventStream stream = eventStore.create("Account","1");
+		EventMessage created = new EventMessage(new AccountCreatedEvent(1,1000.0));
+		EventMessage transfered = new EventMessage(new FundsTransferedEvent(100.0));
+		UUID[] guids = new UUID[WARMUP + COMMITS];
+		for (int i = 0; i < guids.length; i++) {
+			guids[i] = UUID.randomUUID();
+		}
+		for (int i = 0; i < WARMUP; i++) {
+			commit(stream, created, transfered, guids[i]);
+		}
+		long thread = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(thread);
+		for (int i = WARMUP; i < guids.length; i++) {
+			commit(stream, created, transfered, guids[i]);
+		}
+		return (allocations.getThreadAllocatedBytes(thread) - before) / COMMITS;
+	}
+
+	private void commit(EventStream stream, EventMessage first, EventMessage second, UUID guid){
+		stream.add(first);
+		stream.add(second);
+		stream.getUncommitedHeaders().put("Serializer","JsonSerializer");
+		stream.commitChanges(guid);
+	}
+}
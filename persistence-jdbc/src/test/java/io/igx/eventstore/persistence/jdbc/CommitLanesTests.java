@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.igx.eventstore.CommitLanes;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Vinicius Carvalho
+ */
+public class CommitLanesTests {
+
+	@Test
+	public void fullLaneSubmittingToItselfKeepsOrder() throws Exception {
+		try(CommitLanes lanes = new CommitLanes(1, 2)){
+			Executor lane = lanes.laneFor("Account", "1");
+			List<String> order = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch gate = new CountDownLatch(1);
+			CountDownLatch done = new CountDownLatch(3);
+			lane.execute(() -> {
+				started.countDown();
+				await(gate);
+				lane.execute(() -> {
+					order.add("self");
+					done.countDown();
+				});
+			});
+			Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+			for (String name : Arrays.asList("first", "second")) {
+				lane.execute(() -> {
+					order.add(name);
+					done.countDown();
+				});
+			}
+			gate.countDown();
+			Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+			Assert.assertEquals(Arrays.asList("first", "second", "self"), order);
+		}
+	}
+
+	@Test
+	public void submittersWaitForRoom() throws Exception {
+		try(CommitLanes lanes = new CommitLanes(1, 1)){
+			Executor lane = lanes.laneFor("Account", "1");
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch gate = new CountDownLatch(1);
+			lane.execute(() -> {
+				started.countDown();
+				await(gate);
+			});
+			Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+			lane.execute(() -> {});
+			CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> lane.execute(() -> {}));
+			Thread.sleep(200);
+			Assert.assertFalse(blocked.isDone());
+			gate.countDown();
+			blocked.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void closedLanesReject(){
+		CommitLanes lanes = new CommitLanes(2);
+		lanes.close();
+		lanes.laneFor("Account", "1").execute(() -> {});
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
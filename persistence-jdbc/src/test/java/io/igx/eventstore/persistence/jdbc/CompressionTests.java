@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import io.igx.eventstore.serializers.compression.CompressingSerializer;
+import io.igx.eventstore.serializers.compression.Compression;
+import io.igx.eventstore.serializers.json.JacksonSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Vinicius Carvalho
+ */
+public class CompressionTests {
+
+	private final CompressingSerializer<Object> serializer = new CompressingSerializer<>(new JacksonSerializer<>(), Compression.DEFLATE, 0);
+
+	private static byte[] blob(int id, int length, byte[] body) {
+		byte[] blob = new byte[6 + body.length];
+		blob[1] = (byte) id;
+		blob[2] = (byte) (length >>> 24);
+		blob[3] = (byte) (length >>> 16);
+		blob[4] = (byte) (length >>> 8);
+		blob[5] = (byte) length;
+		System.arraycopy(body, 0, blob, 6, body.length);
+		return blob;
+	}
+
+	@Test
+	public void roundTrip(){
+		Map<String, Object> headers = Collections.singletonMap("Payload", String.join("", Collections.nCopies(200, "compressible ")));
+		byte[] bytes = serializer.serialize(headers);
+		Assert.assertEquals(0, bytes[0]);
+		Assert.assertEquals(Compression.DEFLATE.getId(), bytes[1]);
+		Assert.assertEquals(headers, serializer.deserializeMap(bytes));
+		Assert.assertEquals(headers, new CompressingSerializer<>(new JacksonSerializer<>(), Compression.NONE, 0).deserializeMap(bytes));
+	}
+
+	@Test
+	public void noneNeverCompresses(){
+		CompressingSerializer<Object> none = new CompressingSerializer<>(new JacksonSerializer<>(), Compression.NONE, 0);
+		byte[] bytes = none.serialize(Collections.singletonMap("Payload", String.join("", Collections.nCopies(200, "compressible "))));
+		Assert.assertEquals('{', bytes[0]);
+	}
+
+	@Test
+	public void uncompressedFrameIsCopied(){
+		byte[] json = "{\"User\":\"alice\"}".getBytes(StandardCharsets.UTF_8);
+		Assert.assertEquals("alice", serializer.deserializeMap(blob(0, json.length, json)).get("User"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void uncompressedFrameOfWrongLength(){
+		byte[] json = "{\"User\":\"alice\"}".getBytes(StandardCharsets.UTF_8);
+		serializer.deserializeMap(blob(0, json.length + 1, json));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void negativeLength(){
+		serializer.deserializeMap(blob(2, -1, new byte[16]));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void implausibleLength(){
+		serializer.deserializeMap(blob(2, Integer.MAX_VALUE - 8, new byte[16]));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void unknownAlgorithm(){
+		byte[] body = new byte[16];
+		Arrays.fill(body, (byte) 1);
+		serializer.deserializeMap(blob(42, 16, body));
+	}
+}
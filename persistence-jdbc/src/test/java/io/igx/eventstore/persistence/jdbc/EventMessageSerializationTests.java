@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.serializers.EventTypeRegistry;
+import io.igx.eventstore.serializers.json.EventMessageJacksonDeSerializer;
+import io.igx.eventstore.serializers.json.EventMessageJacksonSerializer;
+import io.igx.eventstore.serializers.json.JacksonSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Vinicius Carvalho
+ */
+public class EventMessageSerializationTests extends AbstractEventTests {
+
+	private static final String CREATED = AccountCreatedEvent.class.getName();
+
+	@Test
+	public void aliasRoundTrip(){
+		EventTypeRegistry registry = new EventTypeRegistry().register("AccountCreated", AccountCreatedEvent.class);
+		JacksonSerializer<Object> serializer = new JacksonSerializer<>(registry);
+		List<EventMessage> events = new ArrayList<>();
+		events.add(new EventMessage(Collections.singletonMap("User", "alice"), new AccountCreatedEvent(1, 1000.0)));
+		events.add(new EventMessage(new FundsTransferedEvent(100.0)));
+		byte[] bytes = serializer.serialize(events);
+		String json = new String(bytes, StandardCharsets.UTF_8);
+		Assert.assertTrue(json.contains("\"@type\":\"AccountCreated\""));
+		Assert.assertFalse(json.contains(CREATED));
+		Assert.assertTrue(json.contains(FundsTransferedEvent.class.getName()));
+
+		List<Object> read = serializer.deserializeCollection(bytes, (Class) EventMessage.class);
+		Assert.assertEquals(2, read.size());
+		EventMessage created = (EventMessage) read.get(0);
+		Assert.assertEquals("alice", created.getHeaders().get("User"));
+		Assert.assertEquals(1000.0, ((AccountCreatedEvent) created.getBody()).getAmount(), 0.0);
+		Assert.assertEquals(100.0, ((FundsTransferedEvent) ((EventMessage) read.get(1)).getBody()).getAmount(), 0.0);
+	}
+
+	@Test
+	public void classNameStillReadableAfterAlias(){
+		JacksonSerializer<Object> aliased = new JacksonSerializer<>(new EventTypeRegistry().register("AccountCreated", AccountCreatedEvent.class));
+		String json = "{\"@type\":\"" + CREATED + "\",\"body\":{\"id\":3,\"amount\":5.0},\"headers\":{}}";
+		EventMessage message = aliased.deserialize(json.getBytes(StandardCharsets.UTF_8), EventMessage.class);
+		Assert.assertEquals(3, ((AccountCreatedEvent) message.getBody()).getId().intValue());
+	}
+
+	@Test
+	public void bodyBeforeType(){
+		JacksonSerializer<Object> serializer = new JacksonSerializer<>();
+		String json = "{\"body\":{\"id\":7,\"amount\":250.0},\"headers\":{\"User\":\"bob\"},\"@type\":\"" + CREATED + "\"}";
+		EventMessage message = serializer.deserialize(json.getBytes(StandardCharsets.UTF_8), EventMessage.class);
+		AccountCreatedEvent body = (AccountCreatedEvent) message.getBody();
+		Assert.assertEquals(7, body.getId().intValue());
+		Assert.assertEquals(250.0, body.getAmount(), 0.0);
+		Assert.assertEquals("bob", message.getHeaders().get("User"));
+	}
+
+	@Test
+	public void unknownFieldsAreSkipped(){
+		JacksonSerializer<Object> serializer = new JacksonSerializer<>();
+		String json = "{\"@type\":\"" + CREATED + "\",\"version\":{\"major\":[1,2]},\"body\":{\"id\":1,\"amount\":1.0},\"headers\":{}}";
+		EventMessage message = serializer.deserialize(json.getBytes(StandardCharsets.UTF_8), EventMessage.class);
+		Assert.assertEquals(1, ((AccountCreatedEvent) message.getBody()).getId().intValue());
+	}
+
+	@Test
+	public void nullHeadersAndBody(){
+		JacksonSerializer<Object> serializer = new JacksonSerializer<>();
+		String json = "{\"@type\":\"" + CREATED + "\",\"body\":null,\"headers\":null}";
+		EventMessage message = serializer.deserialize(json.getBytes(StandardCharsets.UTF_8), EventMessage.class);
+		Assert.assertNull(message.getBody());
+		Assert.assertNotNull(message.getHeaders());
+		Assert.assertTrue(message.getHeaders().isEmpty());
+
+		String bodyFirst = "{\"body\":null,\"@type\":\"" + CREATED + "\"}";
+		message = serializer.deserialize(bodyFirst.getBytes(StandardCharsets.UTF_8), EventMessage.class);
+		Assert.assertNull(message.getBody());
+		Assert.assertTrue(message.getHeaders().isEmpty());
+	}
+
+	@Test
+	public void unknownType() throws Exception {
+		EventTypeRegistry registry = new EventTypeRegistry();
+		ObjectMapper mapper = new ObjectMapper();
+		SimpleModule module = new SimpleModule();
+		module.addSerializer(EventMessage.class, new EventMessageJacksonSerializer(registry));
+		module.addDeserializer(EventMessage.class, new EventMessageJacksonDeSerializer(registry));
+		mapper.registerModule(module);
+		String json = "{\"@type\":\"com.example.MissingEvent\",\"body\":{},\"headers\":{}}";
+		try {
+			mapper.readValue(json, EventMessage.class);
+			Assert.fail("An unknown event type must not be read");
+		}
+		catch (RuntimeException | IOException e) {
+			Assert.assertTrue(e.getMessage().contains("com.example.MissingEvent"));
+		}
+		try {
+			mapper.readValue("{\"body\":{},\"headers\":{}}", EventMessage.class);
+			Assert.fail("An event without type must not be read");
+		}
+		catch (RuntimeException | IOException e) {
+			Assert.assertTrue(e.getMessage().contains("@type"));
+		}
+	}
+}
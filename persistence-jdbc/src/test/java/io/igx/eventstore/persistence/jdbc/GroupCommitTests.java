@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.CommitAttempt;
+import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.exceptions.ConcurrencyException;
+import io.igx.eventstore.persistence.StorageException;
+import io.igx.eventstore.persistence.jdbc.properties.JDBCPersistenceProperties;
+import io.igx.eventstore.persistence.jdbc.properties.SQLCommands;
+import io.igx.eventstore.serializers.Serializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.lob.LobHandler;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * @author Vinicius Carvalho
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(JDBCPersistentApplication.class)
+public class GroupCommitTests extends AbstractEventTests {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private SQLCommands sqlCommands;
+
+	@Autowired
+	private Serializer serializer;
+
+	@Autowired
+	private LobHandler lobHandler;
+
+	private JDBCPersistentStream persistentStream;
+
+	@Before
+	public void setup(){
+		JDBCPersistenceProperties properties = new JDBCPersistenceProperties();
+		properties.getGroupCommit().setEnabled(true);
+		properties.getGroupCommit().setMaxLingerMillis(20);
+		persistentStream = new JDBCPersistentStream(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())), sqlCommands, properties, serializer, lobHandler);
+		persistentStream.purge();
+	}
+
+	@After
+	public void close(){
+		persistentStream.close();
+	}
+
+	@Test
+	public void concurrentCommits() throws Exception {
+		List<CompletableFuture<Commit>> futures = new ArrayList<>();
+		for (int i = 1; i <= 32; i++) {
+			CommitAttempt attempt = new CommitAttempt("Account",String.valueOf(i),1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(i,1000.0))));
+			futures.add(CompletableFuture.supplyAsync(() -> persistentStream.commit(attempt)));
+		}
+		for (CompletableFuture<Commit> future : futures) {
+			Assert.assertNotNull(future.get().getCheckpointToken());
+		}
+		Assert.assertEquals(32, persistentStream.from("Account", "0").toList().get().size());
+	}
+
+	@Test
+	public void conflictingAttemptFailsAlone() throws Exception {
+		CommitAttempt first = new CommitAttempt("Account","1",1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(1,1000.0))));
+		CommitAttempt conflicting = new CommitAttempt("Account","1",1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new FundsTransferedEvent(-100.0))));
+		CommitAttempt other = new CommitAttempt("Account","2",1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(2,1000.0))));
+		CompletableFuture<Commit> firstResult = CompletableFuture.supplyAsync(() -> persistentStream.commit(first));
+		CompletableFuture<Commit> conflictingResult = CompletableFuture.supplyAsync(() -> persistentStream.commit(conflicting));
+		CompletableFuture<Commit> otherResult = CompletableFuture.supplyAsync(() -> persistentStream.commit(other));
+		Assert.assertNotNull(otherResult.get());
+		int failures = 0;
+		for (CompletableFuture<Commit> result : Arrays.asList(firstResult, conflictingResult)) {
+			try {
+				result.join();
+			}
+			catch (CompletionException e) {
+				Assert.assertTrue(e.getCause() instanceof ConcurrencyException);
+				failures++;
+			}
+		}
+		Assert.assertEquals(1, failures);
+	}
+
+	@Test
+	public void commitsRacingCloseNeverHang() throws Exception {
+		List<CompletableFuture<Commit>> futures = new ArrayList<>();
+		for (int i = 1; i <= 32; i++) {
+			CommitAttempt attempt = new CommitAttempt("Account",String.valueOf(i),1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(i,1000.0))));
+			futures.add(CompletableFuture.supplyAsync(() -> persistentStream.commit(attempt)));
+		}
+		persistentStream.close();
+		for (CompletableFuture<Commit> future : futures) {
+			try {
+				Assert.assertNotNull(future.get(10, TimeUnit.SECONDS).getCheckpointToken());
+			}
+			catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof IllegalStateException || e.getCause() instanceof StorageException);
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.igx.eventstore.AsynchronousPipelineHook;
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.CommitAttempt;
+import io.igx.eventstore.HookDispatcher;
+import io.igx.eventstore.persistence.BaseCommit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Vinicius Carvalho
+ */
+public class HookDispatcherTests {
+
+	private static Commit commit(long sequence) {
+		return new BaseCommit("1", "Account", sequence, UUID.randomUUID(), sequence, 0L, String.valueOf(sequence), null, null);
+	}
+
+	@Test
+	public void commitsRacingCloseAreDeliveredOrDropped() throws Exception {
+		AtomicInteger delivered = new AtomicInteger();
+		HookDispatcher dispatcher = new HookDispatcher(new SlowHook(2, AsynchronousPipelineHook.OverflowPolicy.BLOCK, delivered, null));
+		List<CompletableFuture<Void>> producers = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			producers.add(CompletableFuture.runAsync(() -> {
+				for (int j = 0; j < 50; j++) {
+					dispatcher.dispatch(commit(j + 1));
+				}
+			}));
+		}
+		Thread.sleep(20);
+		dispatcher.close();
+		for (CompletableFuture<Void> producer : producers) {
+			producer.get(10, TimeUnit.SECONDS);
+		}
+		Assert.assertEquals(0, dispatcher.getPending());
+		Assert.assertEquals(400, delivered.get() + dispatcher.getDropped());
+		Assert.assertEquals(delivered.get(), dispatcher.getDelivered());
+	}
+
+	@Test
+	public void blockedCallerGivesUpOnClose() throws Exception {
+		CountDownLatch gate = new CountDownLatch(1);
+		HookDispatcher dispatcher = new HookDispatcher(new SlowHook(1, AsynchronousPipelineHook.OverflowPolicy.BLOCK, new AtomicInteger(), gate));
+		dispatcher.dispatch(commit(1));
+		dispatcher.dispatch(commit(2));
+		CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> dispatcher.dispatch(commit(3)));
+		Thread.sleep(200);
+		Assert.assertFalse(blocked.isDone());
+		CompletableFuture<Void> closing = CompletableFuture.runAsync(dispatcher::close);
+		blocked.get(5, TimeUnit.SECONDS);
+		Assert.assertEquals(1, dispatcher.getDropped());
+		gate.countDown();
+		closing.get(5, TimeUnit.SECONDS);
+		Assert.assertEquals(2, dispatcher.getDelivered());
+		dispatcher.dispatch(commit(4));
+		Assert.assertEquals(2, dispatcher.getDropped());
+	}
+
+	@Test
+	public void interruptedCallerSpillsItsCommit() throws Exception {
+		CountDownLatch gate = new CountDownLatch(1);
+		AtomicInteger delivered = new AtomicInteger();
+		HookDispatcher dispatcher = new HookDispatcher(new SlowHook(1, AsynchronousPipelineHook.OverflowPolicy.BLOCK, delivered, gate));
+		dispatcher.dispatch(commit(1));
+		dispatcher.dispatch(commit(2));
+		Thread caller = new Thread(() -> dispatcher.dispatch(commit(3)));
+		caller.start();
+		Thread.sleep(200);
+		caller.interrupt();
+		caller.join(5000);
+		Assert.assertFalse(caller.isAlive());
+		Assert.assertEquals(1, dispatcher.getSpilled());
+		gate.countDown();
+		dispatcher.close();
+		Assert.assertEquals(3, delivered.get());
+		Assert.assertEquals(0, dispatcher.getDropped());
+	}
+
+	private static class SlowHook implements AsynchronousPipelineHook {
+
+		private final int bufferSize;
+		private final OverflowPolicy overflowPolicy;
+		private final AtomicInteger delivered;
+		private final CountDownLatch gate;
+
+		SlowHook(int bufferSize, OverflowPolicy overflowPolicy, AtomicInteger delivered, CountDownLatch gate) {
+			this.bufferSize = bufferSize;
+			this.overflowPolicy = overflowPolicy;
+			this.delivered = delivered;
+			this.gate = gate;
+		}
+
+		@Override
+		public int getBufferSize() {
+			return bufferSize;
+		}
+
+		@Override
+		public OverflowPolicy getOverflowPolicy() {
+			return overflowPolicy;
+		}
+
+		@Override
+		public Commit select(Commit committed) {
+			return committed;
+		}
+
+		@Override
+		public boolean preCommit(CommitAttempt attempt) {
+			return true;
+		}
+
+		@Override
+		public void postCommit(Commit committed) {
+			try {
+				if(gate != null)
+					gate.await(5, TimeUnit.SECONDS);
+				else
+					Thread.sleep(1);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			delivered.incrementAndGet();
+		}
+
+		@Override
+		public void onPurge(String bucketId) {
+		}
+
+		@Override
+		public void onDeleteStream(String bucketId, String streamId) {
+		}
+	}
+}
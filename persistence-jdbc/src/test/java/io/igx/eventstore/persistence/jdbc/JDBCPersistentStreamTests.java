@@ -25,10 +25,13 @@
 package io.igx.eventstore.persistence.jdbc;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -43,6 +46,8 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import reactor.core.publisher.Flux;
 import reactor.core.subscriber.Subscribers;
 
@@ -50,6 +55,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.SpringApplicationConfiguration;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * @author Vinicius Carvalho
@@ -62,6 +68,9 @@ public class JDBCPersistentStreamTests extends AbstractEventTests {
 	@Autowired
 	private JDBCPersistentStream persistentStream;
 
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
 	@Before
 	public void clean(){
 		persistentStream.purge();
@@ -162,6 +171,58 @@ public class JDBCPersistentStreamTests extends AbstractEventTests {
 		Assert.assertEquals(accountAggregate.getAmount(),fromStorage.getPayload().getAmount());
 	}
 
+	@Test
+	public void demandDrivenReads() throws Exception {
+		for (long sequence = 1; sequence <= 10; sequence++) {
+			persistentStream.commit(new CommitAttempt("Account","1",sequence, UUID.randomUUID(),sequence,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new FundsTransferedEvent(-1.0)))));
+		}
+		List<Commit> received = new CopyOnWriteArrayList<>();
+		CountDownLatch firstBatch = new CountDownLatch(3);
+		CountDownLatch completed = new CountDownLatch(1);
+		Subscription[] subscription = new Subscription[1];
+		persistentStream.from("0").subscribe(new Subscriber<Commit>() {
+			@Override
+			public void onSubscribe(Subscription s) {
+				subscription[0] = s;
+				s.request(3);
+			}
+
+			@Override
+			public void onNext(Commit commit) {
+				received.add(commit);
+				firstBatch.countDown();
+			}
+
+			@Override
+			public void onError(Throwable t) {
+			}
+
+			@Override
+			public void onComplete() {
+				completed.countDown();
+			}
+		});
+		Assert.assertTrue(firstBatch.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(completed.await(200, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(3, received.size());
+		subscription[0].request(Long.MAX_VALUE);
+		Assert.assertTrue(completed.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(10, received.size());
+		Assert.assertEquals(10L, received.get(9).getCommitSequence().longValue());
+	}
+
+	@Test
+	public void readsJoinTransaction() throws Exception {
+		List<Commit> uncommitted = transactionTemplate.execute(status -> {
+			persistentStream.commit(new CommitAttempt("Account","1",1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(1,1000.0)))));
+			List<Commit> read = persistentStream.from("Account","1",0L,Long.MAX_VALUE).toList().get();
+			status.setRollbackOnly();
+			return read;
+		});
+		Assert.assertEquals(1, uncommitted.size());
+		Assert.assertTrue(persistentStream.from("Account","1",0L,Long.MAX_VALUE).toList().get().isEmpty());
+	}
+
 	@Test
 	public void getStreamsToSnapshot() throws Exception {
 		CommitAttempt attempt = new CommitAttempt("Account","1",1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(1,1000.0))));
@@ -188,6 +249,21 @@ public class JDBCPersistentStreamTests extends AbstractEventTests {
 		Assert.assertEquals(commit.getCommitSequence().intValue(),currentSequence);
 	}
 
+	@Test
+	public void streamHead() throws Exception {
+		CommitAttempt attempt = new CommitAttempt("Account","1",1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(1,1000.0))));
+		persistentStream.commit(attempt);
+		CommitAttempt attempt2 = new CommitAttempt("Account","1",3L, UUID.randomUUID(),2L,System.currentTimeMillis(), Collections.emptyMap(),Arrays.asList(new EventMessage(new FundsTransferedEvent(-100.0)),new EventMessage(new FundsTransferedEvent(-100.0))));
+		Commit commit = persistentStream.commit(attempt2);
+		StreamHead head = persistentStream.getStreamHead("Account","1");
+		Assert.assertEquals(3,head.getHeadRevision().intValue());
+		Assert.assertEquals(2L,head.getHeadCommitSequence().longValue());
+		Assert.assertEquals(commit.getCheckpointToken(),head.getCheckpointToken());
+		Assert.assertNull(persistentStream.getStreamHead("Account","2"));
+		persistentStream.deleteStream("Account","1");
+		Assert.assertNull(persistentStream.getStreamHead("Account","1"));
+	}
+
 	@Test
 	public void deleteStream() throws Exception{
 		CommitAttempt attempt = new CommitAttempt("Account","1",1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(1,1000.0))));
@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.persistence.LazyCommit;
+import io.igx.eventstore.serializers.Serializer;
+import io.igx.eventstore.serializers.json.JacksonSerializer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Vinicius Carvalho
+ */
+public class LazyCommitTests extends AbstractEventTests {
+
+	private final JacksonSerializer<Object> json = new JacksonSerializer<>();
+	private final AtomicInteger headerReads = new AtomicInteger();
+	private final AtomicInteger eventReads = new AtomicInteger();
+	private Serializer<Object> counting;
+	private byte[] rawHeaders;
+	private byte[] rawEvents;
+
+	@Before
+	public void setup(){
+		counting = new Serializer<Object>() {
+			@Override
+			public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+				return json.deserialize(bytes, clazz);
+			}
+
+			@Override
+			public List<Object> deserializeCollection(byte[] bytes, Class<Object> clazz) {
+				eventReads.incrementAndGet();
+				return json.deserializeCollection(bytes, clazz);
+			}
+
+			@Override
+			public Map<String, Object> deserializeMap(byte[] bytes) {
+				headerReads.incrementAndGet();
+				return json.deserializeMap(bytes);
+			}
+
+			@Override
+			public byte[] serialize(Object payload) {
+				return json.serialize(payload);
+			}
+		};
+		rawHeaders = json.serialize(Collections.singletonMap("User", "alice"));
+		List<EventMessage> events = new ArrayList<>();
+		events.add(new EventMessage(new AccountCreatedEvent(1, 1000.0)));
+		events.add(new EventMessage(new FundsTransferedEvent(100.0)));
+		rawEvents = json.serialize(events);
+	}
+
+	private LazyCommit commit(){
+		return new LazyCommit("1", "Account", 2L, UUID.randomUUID(), 1L, System.currentTimeMillis(), "7", rawHeaders, rawEvents, counting);
+	}
+
+	@Test
+	public void identityDoesNotDeserialize(){
+		LazyCommit commit = commit();
+		Assert.assertEquals("1", commit.getStreamId());
+		Assert.assertEquals("7", commit.getCheckpointToken());
+		Assert.assertEquals(rawHeaders.length + rawEvents.length, commit.getSerializedSize());
+		Assert.assertEquals(0, headerReads.get());
+		Assert.assertEquals(0, eventReads.get());
+	}
+
+	@Test
+	public void memoizedAndRawBytesReleased() throws Exception {
+		LazyCommit commit = commit();
+		Map<String, Object> headers = commit.getHeaders();
+		Collection<EventMessage> events = commit.getEvents();
+		Assert.assertEquals("alice", headers.get("User"));
+		Assert.assertEquals(2, events.size());
+		Assert.assertSame(headers, commit.getHeaders());
+		Assert.assertSame(events, commit.getEvents());
+		Assert.assertEquals(1, headerReads.get());
+		Assert.assertEquals(1, eventReads.get());
+		Assert.assertNull(raw(commit, "rawHeaders"));
+		Assert.assertNull(raw(commit, "rawEvents"));
+	}
+
+	@Test
+	public void concurrentFirstAccessDeserializesOnce() throws Exception {
+		LazyCommit commit = commit();
+		int threads = 16;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Collection<EventMessage>>> results = new ArrayList<>();
+		try {
+			for (int i = 0; i < threads; i++) {
+				results.add(executor.submit(() -> {
+					start.await();
+					commit.getHeaders();
+					return commit.getEvents();
+				}));
+			}
+			start.countDown();
+			Collection<EventMessage> first = results.get(0).get(10, TimeUnit.SECONDS);
+			for (Future<Collection<EventMessage>> result : results) {
+				Assert.assertSame(first, result.get(10, TimeUnit.SECONDS));
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		Assert.assertEquals(1, headerReads.get());
+		Assert.assertEquals(1, eventReads.get());
+	}
+
+	@Test
+	public void missingPartsAreEmpty(){
+		LazyCommit commit = new LazyCommit("1", "Account", 1L, UUID.randomUUID(), 1L, 1L, "1", null, null, counting);
+		Assert.assertTrue(commit.getHeaders().isEmpty());
+		Assert.assertTrue(commit.getEvents().isEmpty());
+		Assert.assertEquals(0, commit.getSerializedSize());
+	}
+
+	private static Object raw(LazyCommit commit, String name) throws Exception {
+		Field field = LazyCommit.class.getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(commit);
+	}
+}
@@ -24,16 +24,41 @@
 
 package io.igx.eventstore.persistence.jdbc;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import io.igx.eventstore.AsynchronousPipelineHook;
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.CommitAttempt;
+import io.igx.eventstore.CommitEvent;
+import io.igx.eventstore.CommitExecutors;
+import io.igx.eventstore.CommitLanes;
+import io.igx.eventstore.ConflictResolver;
 import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.EventStore;
 import io.igx.eventstore.EventStream;
 import io.igx.eventstore.OptimisticEventStream;
+import io.igx.eventstore.OptmisticEventStore;
+import io.igx.eventstore.OptmisticPipelineHook;
+import io.igx.eventstore.RetryPolicy;
+import io.igx.eventstore.UnitOfWork;
 import static org.junit.Assert.*;
 
 import io.igx.eventstore.exceptions.ConcurrencyException;
+import io.igx.eventstore.exceptions.DuplicateCommitException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -42,6 +67,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.IntegrationTest;
 import org.springframework.boot.test.SpringApplicationConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import reactor.core.publisher.Flux;
 
 /**
  * @author Vinicius Carvalho
@@ -102,4 +128,357 @@ public class OptimisticEventStreamTests extends AbstractEventTests{
 		commitedEvents = secondStream.getCommitedEvents().toList().get();
 		assertEquals(2,commitedEvents.size());
 	}
+
+	@Test
+	public void createExistingStream() throws Exception{
+		EventStore eventStore = new OptmisticEventStore(persistentStream, null);
+		EventStream firstStream = eventStore.create("Account","1");
+		firstStream.add(new EventMessage(new AccountCreatedEvent(1,1000.0)));
+		firstStream.commitChanges(UUID.randomUUID());
+		EventStream secondStream = eventStore.create("Account","1");
+		assertEquals(0L,secondStream.getStreamRevision().longValue());
+		secondStream.add(new EventMessage(new FundsTransferedEvent(100.0)));
+		try{
+			secondStream.commitChanges(UUID.randomUUID());
+			fail("Expected a ConcurrencyException");
+		}catch (ConcurrencyException e){}
+		assertEquals(1L,secondStream.getStreamRevision().longValue());
+		secondStream.commitChanges(UUID.randomUUID());
+		assertEquals(2,secondStream.getCommitedEvents().toList().get().size());
+	}
+
+	@Test
+	public void staleAttemptRefusedByHook() throws Exception{
+		OptmisticEventStore eventStore = new OptmisticEventStore(persistentStream, Collections.singletonList(new OptmisticPipelineHook()));
+		EventStream firstStream = eventStore.create("Account","1");
+		EventStream secondStream = eventStore.create("Account","1");
+		firstStream.add(new EventMessage(new AccountCreatedEvent(1,1000.0)));
+		firstStream.commitChanges(UUID.randomUUID());
+		secondStream.add(new EventMessage(new FundsTransferedEvent(100.0)));
+		try{
+			secondStream.commitChanges(UUID.randomUUID());
+			fail("Expected a ConcurrencyException");
+		}catch (ConcurrencyException e){}
+		assertEquals(1L,eventStore.getAvoidedRoundTrips());
+		secondStream.commitChanges(UUID.randomUUID());
+		assertEquals(2,secondStream.getCommitedEvents().toList().get().size());
+	}
+
+	@Test
+	public void openFromTrackedHead() throws Exception{
+		OptmisticEventStore eventStore = new OptmisticEventStore(persistentStream, Collections.singletonList(new OptmisticPipelineHook()));
+		EventStream stream = eventStore.create("Account","1");
+		stream.add(new EventMessage(new AccountCreatedEvent(1,1000.0)));
+		stream.add(new EventMessage(new FundsTransferedEvent(100.0)));
+		stream.commitChanges(UUID.randomUUID());
+		EventStream reopened = eventStore.open("Account","1",0L,Long.MAX_VALUE);
+		assertEquals(1L,eventStore.getCachedOpens());
+		assertEquals(2L,reopened.getStreamRevision().longValue());
+		assertEquals(1L,reopened.getCommitSequence().longValue());
+		eventStore.deleteStream("Account","1");
+		assertEquals(0L,eventStore.open("Account","1",0L,Long.MAX_VALUE).getStreamRevision().longValue());
+		assertEquals(1L,eventStore.getCachedOpens());
+	}
+
+	@Test
+	public void commitLanesSerializeStreams() throws Exception{
+		try(CommitLanes lanes = new CommitLanes(4)){
+			OptmisticEventStore eventStore = new OptmisticEventStore(persistentStream, Collections.singletonList(new OptmisticPipelineHook()), CommitExecutors.defaultExecutor(), lanes);
+			List<CompletableFuture<Long>> results = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				results.add(eventStore.execute("Account","1",stream -> {
+					stream.add(new EventMessage(new FundsTransferedEvent(10.0)));
+					stream.commitChanges(UUID.randomUUID());
+					return stream.getStreamRevision();
+				}));
+			}
+			for (CompletableFuture<Long> result : results) {
+				result.get();
+			}
+			assertEquals(16L,eventStore.open("Account","1",0L,Long.MAX_VALUE).getStreamRevision().longValue());
+			long deadline = System.currentTimeMillis() + 5000;
+			while (lanes.getTotalDepth() != 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(0,lanes.getTotalDepth());
+		}
+	}
+
+	@Test
+	public void conflictRetry() throws Exception{
+		EventStore eventStore = new OptmisticEventStore(persistentStream, null);
+		EventStream firstStream = eventStore.create("Account","1");
+		EventStream secondStream = eventStore.create("Account","1");
+		firstStream.add(new EventMessage(new AccountCreatedEvent(1,1000.0)));
+		firstStream.commitChanges(UUID.randomUUID());
+		secondStream.add(new EventMessage(new FundsTransferedEvent(100.0)));
+		RetryPolicy retryPolicy = new RetryPolicy(3, 1, 10);
+		try{
+			secondStream.commitChanges(UUID.randomUUID(), ConflictResolver.NEVER, retryPolicy);
+			fail("Expected a ConcurrencyException");
+		}catch (ConcurrencyException e){}
+		assertEquals(1L,secondStream.getStreamRevision().longValue());
+		firstStream.add(new EventMessage(new FundsTransferedEvent(200.0)));
+		firstStream.commitChanges(UUID.randomUUID());
+		secondStream.commitChanges(UUID.randomUUID(), (uncommitted, committed) -> committed.size() == 1, retryPolicy);
+		assertEquals(3L,secondStream.getStreamRevision().longValue());
+		assertEquals(1L,retryPolicy.getExhausted());
+		assertEquals(1L,retryPolicy.getAttemptHistogram()[2]);
+		assertEquals(3,eventStore.open("Account","1",0L,Long.MAX_VALUE).getCommitedEvents().toList().get().size());
+	}
+
+	@Test
+	public void asynchronousHook() throws Exception{
+		List<Commit> delivered = new CopyOnWriteArrayList<>();
+		AsynchronousPipelineHook hook = new AsynchronousPipelineHook() {
+			public Commit select(Commit committed) { return committed; }
+			public boolean preCommit(CommitAttempt attempt) { return true; }
+			public void postCommit(Commit committed) { delivered.add(committed); }
+			public void onPurge(String bucketId) { }
+			public void onDeleteStream(String bucketId, String streamId) { }
+		};
+		OptmisticEventStore eventStore = new OptmisticEventStore(persistentStream, Collections.singletonList(hook));
+		EventStream stream = eventStore.create("Account","1");
+		for (int i = 0; i < 3; i++) {
+			stream.add(new EventMessage(new FundsTransferedEvent(10.0)));
+			stream.commitChanges(UUID.randomUUID());
+		}
+		eventStore.close();
+		assertEquals(3,delivered.size());
+		assertEquals(3L,delivered.get(2).getCommitSequence().longValue());
+		assertEquals(3L,eventStore.getHookDispatchers().iterator().next().getDelivered());
+	}
+
+	@Test
+	public void duplicateCommit() throws Exception{
+		OptmisticEventStore eventStore = new OptmisticEventStore(persistentStream, Collections.singletonList(new OptmisticPipelineHook()));
+		CommitAttempt attempt = new CommitAttempt("Account","1",1L,UUID.randomUUID(),1L,System.currentTimeMillis(),Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(1,1000.0))));
+		Commit original = eventStore.commit(attempt);
+		try{
+			eventStore.commit(attempt);
+			fail("Retried commit must be recognized");
+		}catch (DuplicateCommitException e){
+			assertEquals(original.getCheckpointToken(),e.getOriginal().getCheckpointToken());
+		}
+		OptmisticEventStore otherStore = new OptmisticEventStore(persistentStream, null);
+		try{
+			otherStore.commit(attempt);
+			fail("Retried commit must be recognized by storage");
+		}catch (DuplicateCommitException e){
+			assertEquals(original.getCheckpointToken(),e.getOriginal().getCheckpointToken());
+		}
+		try{
+			otherStore.commit(new CommitAttempt("Account","1",1L,UUID.randomUUID(),1L,System.currentTimeMillis(),Collections.emptyMap(),attempt.getEvents()));
+			fail("Conflicting commit must be refused");
+		}catch (ConcurrencyException e){}
+		assertEquals(1,eventStore.getDuplicateCommits());
+	}
+
+	@Test
+	public void unitOfWork() throws Exception{
+		EventStore eventStore = new OptmisticEventStore(persistentStream, Collections.singletonList(new OptmisticPipelineHook()));
+		EventStream debit = eventStore.create("Account","1");
+		EventStream credit = eventStore.create("Account","2");
+		debit.add(new EventMessage(new AccountCreatedEvent(1,1000.0)));
+		credit.add(new EventMessage(new AccountCreatedEvent(2,0.0)));
+		List<Commit> commits = eventStore.beginUnitOfWork().add(debit,UUID.randomUUID()).add(credit,UUID.randomUUID()).commit();
+		assertEquals(2,commits.size());
+		assertEquals(1L,debit.getStreamRevision().longValue());
+		assertEquals(1L,credit.getStreamRevision().longValue());
+
+		EventStream concurrent = new OptimisticEventStream("Account","2",persistentStream);
+		concurrent.add(new EventMessage(new FundsTransferedEvent(50.0)));
+		concurrent.commitChanges(UUID.randomUUID());
+
+		debit.add(new EventMessage(new FundsTransferedEvent(-100.0)));
+		credit.add(new EventMessage(new FundsTransferedEvent(100.0)));
+		UnitOfWork transfer = eventStore.beginUnitOfWork().add(debit,UUID.randomUUID()).add(credit,UUID.randomUUID());
+		try{
+			transfer.commit();
+			fail("Stale credit stream must fail the whole unit of work");
+		}catch (ConcurrencyException e){
+			assertEquals("2",e.getStreamId());
+		}
+		assertEquals(1,eventStore.open("Account","1",Long.MIN_VALUE,Long.MAX_VALUE).getCommitedEvents().toList().get().size());
+		assertEquals(1,debit.getUncommitedEvents().size());
+		assertEquals(2L,credit.getStreamRevision().longValue());
+	}
+
+	@Test
+	public void appendWithExpectedRevision() throws Exception{
+		EventStore eventStore = new OptmisticEventStore(persistentStream, Collections.singletonList(new OptmisticPipelineHook()));
+		Commit created = eventStore.append("Account","1",0L,Collections.singletonList(new EventMessage(new AccountCreatedEvent(1,1000.0))),Collections.emptyMap());
+		assertEquals(1L,created.getStreamRevision().longValue());
+		Commit transfered = eventStore.append("Account","1",EventStore.ANY_REVISION,Collections.singletonList(new EventMessage(new FundsTransferedEvent(100.0))),Collections.emptyMap());
+		assertEquals(2L,transfered.getStreamRevision().longValue());
+		assertEquals(2L,transfered.getCommitSequence().longValue());
+		try{
+			eventStore.append("Account","1",1L,Collections.singletonList(new EventMessage(new FundsTransferedEvent(100.0))),Collections.emptyMap());
+			fail("Stale expected revision must be refused");
+		}catch (ConcurrencyException e){
+			assertEquals("1",e.getStreamId());
+		}
+		EventStream stream = eventStore.open("Account","1",Long.MIN_VALUE,Long.MAX_VALUE);
+		assertEquals(2L,stream.getStreamRevision().longValue());
+		assertEquals(2,stream.getCommitedEvents().toList().get().size());
+	}
+
+	@Test
+	public void concurrentFirstAppends() throws Exception{
+		EventStore eventStore = new OptmisticEventStore(persistentStream, null);
+		ExecutorService writers = Executors.newFixedThreadPool(2);
+		try{
+			for (int round = 0; round < 20; round++) {
+				CyclicBarrier start = new CyclicBarrier(2);
+				List<Future<Commit>> appends = new ArrayList<>();
+				for (int writer = 0; writer < 2; writer++) {
+					String streamId = "new-" + round + "-" + writer;
+					appends.add(writers.submit(() -> {
+						start.await(5, TimeUnit.SECONDS);
+						return eventStore.append("Account",streamId,0L,Collections.singletonList(new EventMessage(new AccountCreatedEvent(1,1000.0))),Collections.emptyMap());
+					}));
+				}
+				for (Future<Commit> append : appends) {
+					try{
+						assertEquals(1L,append.get().getStreamRevision().longValue());
+					}catch (ExecutionException e){
+						assertTrue("A lost race must surface as a conflict, was " + e.getCause(), e.getCause() instanceof ConcurrencyException);
+					}
+				}
+			}
+		}
+		finally {
+			writers.shutdownNow();
+		}
+	}
+
+	@Test
+	public void revisionWindow() throws Exception{
+		EventStore eventStore = new OptmisticEventStore(persistentStream, null);
+		EventStream stream = eventStore.create("Account","1");
+		stream.add(new EventMessage(new AccountCreatedEvent(1,1000.0)));
+		stream.add(new EventMessage(new FundsTransferedEvent(100.0)));
+		stream.add(new EventMessage(new FundsTransferedEvent(200.0)));
+		stream.commitChanges(UUID.randomUUID());
+		stream.add(new EventMessage(new FundsTransferedEvent(300.0)));
+		stream.add(new EventMessage(new FundsTransferedEvent(400.0)));
+		stream.commitChanges(UUID.randomUUID());
+		List<EventMessage> events = eventStore.open("Account","1",2L,4L).getCommitedEvents().toList().get();
+		assertEquals(3,events.size());
+		assertEquals(100.0,((FundsTransferedEvent)events.get(0).getBody()).getAmount(),0.0);
+		assertEquals(300.0,((FundsTransferedEvent)events.get(2).getBody()).getAmount(),0.0);
+	}
+
+	@Test
+	public void asyncCommit() throws Exception{
+		EventStream stream = new OptimisticEventStream("Account","1",persistentStream);
+		stream.add(new EventMessage(new AccountCreatedEvent(1,1000.0)));
+		stream.add(new EventMessage(new FundsTransferedEvent(100.0)));
+		Commit commit = stream.commitChangesAsync(UUID.randomUUID()).get();
+		assertEquals(2,commit.getEvents().size());
+		assertEquals(2L,stream.getStreamRevision().longValue());
+		assertTrue(stream.getUncommitedEvents().isEmpty());
+	}
+
+	@Test
+	public void asyncCommitOwnsTheStream() throws Exception{
+		CountDownLatch release = new CountDownLatch(1);
+		CommitEvent slow = new CommitEvent() {
+			public Flux<Commit> from(String bucketId, String streamId, Long minRevision, Long maxRevision) {
+				return persistentStream.from(bucketId,streamId,minRevision,maxRevision);
+			}
+			public Commit commit(CommitAttempt attempt) {
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return persistentStream.commit(attempt);
+			}
+		};
+		EventStream stream = new OptimisticEventStream("Account","1",persistentStream,slow,CommitExecutors.defaultExecutor(),null,null);
+		stream.add(new EventMessage(new AccountCreatedEvent(1,1000.0)));
+		CompletableFuture<Commit> commit = stream.commitChangesAsync(UUID.randomUUID());
+		try{
+			stream.add(new EventMessage(new FundsTransferedEvent(100.0)));
+			fail("Changes made while a commit is in flight must be refused");
+		}catch (IllegalStateException e){}
+		release.countDown();
+		assertEquals(1L,commit.get().getStreamRevision().longValue());
+		stream.add(new EventMessage(new FundsTransferedEvent(100.0)));
+		assertEquals(1,stream.getUncommitedEvents().size());
+	}
+
+	@Test
+	public void asyncCommitRejectedWhenSaturated() throws Exception{
+		EventStream stream = new OptimisticEventStream("Account","1",persistentStream,persistentStream,runnable -> { throw new RejectedExecutionException("Saturated"); },null,null);
+		stream.add(new EventMessage(new AccountCreatedEvent(1,1000.0)));
+		try{
+			stream.commitChangesAsync(UUID.randomUUID()).get();
+			fail("A saturated executor must fail the commit");
+		}catch (ExecutionException e){
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		assertEquals(0L,stream.getStreamRevision().longValue());
+		assertEquals(1,stream.getUncommitedEvents().size());
+		stream.add(new EventMessage(new FundsTransferedEvent(100.0)));
+	}
+
+	@Test
+	public void commitHeadersAcrossCommits() throws Exception{
+		EventStream stream = new OptimisticEventStream("Account","1",persistentStream);
+		stream.getUncommitedHeaders().put("User","alice");
+		stream.getUncommitedHeaders().put("Origin","web");
+		stream.add(new EventMessage(new AccountCreatedEvent(1,1000.0)));
+		stream.commitChanges(UUID.randomUUID());
+		stream.getUncommitedHeaders().put("User","bob");
+		stream.add(new EventMessage(new FundsTransferedEvent(100.0)));
+		stream.commitChanges(UUID.randomUUID());
+		stream.getUncommitedHeaders().put("Batch",3);
+		stream.add(new EventMessage(new FundsTransferedEvent(200.0)));
+		stream.commitChanges(UUID.randomUUID());
+
+		List<Map<String,Object>> perCommit = persistentStream.getCommitHeaders("Account","1",0L,Long.MAX_VALUE).toList().get();
+		assertEquals(3,perCommit.size());
+		assertEquals("alice",perCommit.get(0).get("User"));
+		assertEquals("bob",perCommit.get(1).get("User"));
+
+		EventStream reopened = new OptimisticEventStream("Account","1",persistentStream);
+		Map<String,Object> merged = reopened.getCommitedHeaders();
+		assertEquals("bob",merged.get("User"));
+		assertEquals("web",merged.get("Origin"));
+		assertEquals(3,((Number)merged.get("Batch")).intValue());
+		assertEquals(merged,reopened.getCommitedHeadersAsync().get());
+	}
+
+	@Test
+	public void duplicateOfOlderCommitKeepsHead() throws Exception{
+		UUID retried = UUID.randomUUID();
+		Commit original = persistentStream.commit(new CommitAttempt("Account","1",1L,retried,1L,System.currentTimeMillis(),Collections.emptyMap(),Collections.singletonList(new EventMessage(new AccountCreatedEvent(1,1000.0)))));
+		persistentStream.commit(new CommitAttempt("Account","1",2L,UUID.randomUUID(),2L,System.currentTimeMillis(),Collections.emptyMap(),Collections.singletonList(new EventMessage(new FundsTransferedEvent(100.0)))));
+		CommitEvent duplicates = new CommitEvent() {
+			public Flux<Commit> from(String bucketId, String streamId, Long minRevision, Long maxRevision) {
+				return persistentStream.from(bucketId,streamId,minRevision,maxRevision);
+			}
+			public Commit commit(CommitAttempt attempt) {
+				throw new DuplicateCommitException(original);
+			}
+		};
+		EventStream stream = new OptimisticEventStream("Account","1",persistentStream,duplicates,CommitExecutors.defaultExecutor(),null,null);
+		assertEquals(2L,stream.getStreamRevision().longValue());
+
+		stream.add(new EventMessage(new FundsTransferedEvent(200.0)));
+		stream.commitChanges(retried);
+		assertEquals(2L,stream.getStreamRevision().longValue());
+		assertTrue(stream.getUncommitedEvents().isEmpty());
+
+		stream.add(new EventMessage(new FundsTransferedEvent(300.0)));
+		try{
+			stream.commitChanges(UUID.randomUUID());
+			fail("A duplicate of another commit is not a retry");
+		}catch (DuplicateCommitException e){}
+		assertEquals(2L,stream.getStreamRevision().longValue());
+		assertEquals(1,stream.getUncommitedEvents().size());
+	}
 }
@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.CommitAttempt;
+import io.igx.eventstore.EventMessage;
+import io.igx.eventstore.Snapshot;
+import io.igx.eventstore.persistence.BaseSnapshot;
+import io.igx.eventstore.persistence.jdbc.properties.JDBCPersistenceProperties;
+import io.igx.eventstore.persistence.jdbc.properties.SQLCommands;
+import io.igx.eventstore.serializers.Serializer;
+import io.igx.eventstore.serializers.compression.CompressingSerializer;
+import io.igx.eventstore.serializers.compression.Compression;
+import io.igx.eventstore.serializers.smile.SmileSerializer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.lob.LobHandler;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * @author Vinicius Carvalho
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(JDBCPersistentApplication.class)
+public class PayloadFormatTests extends AbstractEventTests {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private SQLCommands sqlCommands;
+
+	@Autowired
+	private Serializer serializer;
+
+	@Autowired
+	private LobHandler lobHandler;
+
+	@Autowired
+	private JDBCPersistentStream persistentStream;
+
+	private JDBCPersistentStream binaryStream;
+
+	@Before
+	public void setup(){
+		Map<PayloadFormat,Serializer> serializers = new EnumMap<>(PayloadFormat.class);
+		serializers.put(PayloadFormat.JSON, serializer);
+		serializers.put(PayloadFormat.SMILE, new SmileSerializer());
+		PayloadFormats payloadFormats = new PayloadFormats(serializers, PayloadFormat.JSON, Collections.singletonMap("Sensor", PayloadFormat.SMILE));
+		binaryStream = new JDBCPersistentStream(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())), sqlCommands, new JDBCPersistenceProperties(), payloadFormats, lobHandler);
+		binaryStream.purge();
+	}
+
+	@Test
+	public void mixedFormats() throws Exception {
+		CommitAttempt json = new CommitAttempt("Account","1",1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.singletonMap("user","john"),Collections.singletonList(new EventMessage(new AccountCreatedEvent(1,1000.0))));
+		CommitAttempt smile = new CommitAttempt("Sensor","1",1L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.singletonMap("user","john"),Collections.singletonList(new EventMessage(new AccountCreatedEvent(2,500.0))));
+		binaryStream.commit(json);
+		binaryStream.commit(smile);
+		Assert.assertEquals(PayloadFormat.SMILE.getId(), jdbcTemplate.queryForObject("SELECT FORMAT FROM COMMITS WHERE BUCKET_ID = 'Sensor'", Integer.class).intValue());
+
+		List<Commit> commits = persistentStream.from("0").toList().get();
+		Assert.assertEquals(2, commits.size());
+		for (Commit commit : commits) {
+			Assert.assertEquals("john", commit.getHeaders().get("user"));
+			EventMessage event = commit.getEvents().iterator().next();
+			Assert.assertTrue(event.getBody() instanceof AccountCreatedEvent);
+		}
+	}
+
+	@Test
+	public void compressedPayloads() throws Exception {
+		CompressingSerializer compressing = new CompressingSerializer(serializer, Compression.DEFLATE, 0);
+		JDBCPersistentStream compressedStream = new JDBCPersistentStream(jdbcTemplate, sqlCommands, compressing, lobHandler);
+		List<EventMessage> events = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			events.add(new EventMessage(new FundsTransferedEvent(-100.0)));
+		}
+		compressedStream.commit(new CommitAttempt("Account","1",20L, UUID.randomUUID(),1L,System.currentTimeMillis(), Collections.emptyMap(),events));
+		compressedStream.add(new BaseSnapshot<>("Account","1",20L,new AccountCreatedEvent(1,1000.0)));
+		Assert.assertTrue(compressing.getMetrics().getBytesSaved() > 0);
+
+		Commit commit = persistentStream.from("Account","1",0L,Long.MAX_VALUE).toList().get().get(0);
+		Assert.assertEquals(20, commit.getEvents().size());
+		Snapshot<AccountCreatedEvent> snapshot = persistentStream.getSnapshot("Account","1",20,AccountCreatedEvent.class);
+		Assert.assertEquals(1000.0, snapshot.getPayload().getAmount(), 0.0);
+	}
+}
+
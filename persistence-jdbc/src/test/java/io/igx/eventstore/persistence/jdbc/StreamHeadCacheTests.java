@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.UUID;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.StreamHeadCache;
+import io.igx.eventstore.persistence.BaseCommit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Vinicius Carvalho
+ */
+public class StreamHeadCacheTests {
+
+	private static Commit commit(String bucketId, String streamId, long revision) {
+		return new BaseCommit(streamId, bucketId, revision, UUID.randomUUID(), revision, 0L, String.valueOf(revision), null, null);
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed(){
+		StreamHeadCache cache = new StreamHeadCache(3, 1);
+		cache.update(commit("Account", "1", 1));
+		cache.update(commit("Account", "2", 1));
+		cache.update(commit("Account", "3", 1));
+		Assert.assertNotNull(cache.get("Account", "1"));
+		cache.update(commit("Account", "4", 1));
+		Assert.assertEquals(3, cache.size());
+		Assert.assertNotNull(cache.get("Account", "1"));
+		Assert.assertNull(cache.get("Account", "2"));
+		Assert.assertNotNull(cache.get("Account", "3"));
+		Assert.assertNotNull(cache.get("Account", "4"));
+	}
+
+	@Test
+	public void keepsHighestRevision(){
+		StreamHeadCache cache = new StreamHeadCache(8);
+		cache.update(commit("Account", "1", 3));
+		cache.update(commit("Account", "1", 2));
+		Assert.assertEquals(3L, cache.get("Account", "1").getHeadCommitSequence().longValue());
+		cache.advance(commit("Account", "1", 4));
+		Assert.assertEquals(4L, cache.get("Account", "1").getHeadCommitSequence().longValue());
+		cache.advance(commit("Account", "2", 1));
+		Assert.assertNull(cache.get("Account", "2"));
+	}
+
+	@Test
+	public void segmentsNeverOutnumberCapacity(){
+		StreamHeadCache cache = new StreamHeadCache(1, 16);
+		for (int i = 0; i < 100; i++) {
+			cache.update(commit("Account", String.valueOf(i), 1));
+			Assert.assertEquals(1, cache.size());
+		}
+		Assert.assertNotNull(cache.get("Account", "99"));
+	}
+
+	@Test
+	public void capacityRoundedUpPerSegment(){
+		// concurrency 3 is rounded to 4 segments, each holding ceil(10 / 4) = 3 heads
+		StreamHeadCache cache = new StreamHeadCache(10, 3);
+		for (int i = 0; i < 1000; i++) {
+			cache.update(commit("Account", String.valueOf(i), 1));
+			Assert.assertTrue(cache.size() <= 12);
+		}
+		Assert.assertTrue(cache.size() >= 4);
+
+		// never more segments than capacity: 2 segments of 2 heads, not 4 segments of 1
+		cache = new StreamHeadCache(3, 16);
+		for (int i = 0; i < 1000; i++) {
+			cache.update(commit("Account", String.valueOf(i), 1));
+			Assert.assertTrue(cache.size() <= 4);
+		}
+	}
+
+	@Test
+	public void removeBucket(){
+		StreamHeadCache cache = new StreamHeadCache(64, 4);
+		for (int i = 0; i < 10; i++) {
+			cache.update(commit("Account", String.valueOf(i), 1));
+			cache.update(commit("Sensor", String.valueOf(i), 1));
+		}
+		cache.removeBucket("Account");
+		Assert.assertEquals(10, cache.size());
+		for (int i = 0; i < 10; i++) {
+			Assert.assertNull(cache.get("Account", String.valueOf(i)));
+			Assert.assertNotNull(cache.get("Sensor", String.valueOf(i)));
+		}
+		cache.remove("Sensor", "0");
+		Assert.assertEquals(9, cache.size());
+		cache.clear();
+		Assert.assertEquals(0, cache.size());
+	}
+}
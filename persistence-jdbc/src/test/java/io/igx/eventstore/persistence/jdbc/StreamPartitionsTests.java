@@ -0,0 +1,230 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jonathan Oliver, Jonathan Matheus, Damian Hickey and contributors, 2016 Vinicius Carvalho
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.igx.eventstore.persistence.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.igx.eventstore.Commit;
+import io.igx.eventstore.persistence.BaseCommit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * @author Vinicius Carvalho
+ */
+public class StreamPartitionsTests {
+
+	private static final int PARTITIONS = 3;
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@After
+	public void shutdown(){
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void partitionsConsumedConcurrently() throws Exception {
+		List<Commit> commits = commits(6, 20);
+		StreamPartitions split = new StreamPartitions(new ListPublisher(commits), PARTITIONS, 8, executor);
+		// every partition holds its first commit until all of them have one in hand
+		CyclicBarrier together = new CyclicBarrier(PARTITIONS);
+		List<Throwable> errors = new CopyOnWriteArrayList<>();
+		List<List<Commit>> received = new ArrayList<>();
+		CountDownLatch completed = new CountDownLatch(PARTITIONS);
+		for (Publisher<Commit> partition : split.getPartitions()) {
+			List<Commit> delivered = new CopyOnWriteArrayList<>();
+			received.add(delivered);
+			partition.subscribe(new Subscriber<Commit>() {
+				@Override
+				public void onSubscribe(Subscription s) {
+					s.request(Long.MAX_VALUE);
+				}
+
+				@Override
+				public void onNext(Commit commit) {
+					if(delivered.isEmpty()){
+						try {
+							together.await(5, TimeUnit.SECONDS);
+						}
+						catch (Exception e) {
+							errors.add(e);
+						}
+					}
+					delivered.add(commit);
+				}
+
+				@Override
+				public void onError(Throwable t) {
+					errors.add(t);
+					completed.countDown();
+				}
+
+				@Override
+				public void onComplete() {
+					completed.countDown();
+				}
+			});
+		}
+		Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+		Assert.assertTrue(errors.toString(), errors.isEmpty());
+		int total = 0;
+		for (int partition = 0; partition < PARTITIONS; partition++) {
+			Map<String, Long> lastRevisions = new HashMap<>();
+			for (Commit commit : received.get(partition)) {
+				Assert.assertEquals(partition, StreamPartitions.partitionOf(commit.getStreamId(), PARTITIONS));
+				Long lastRevision = lastRevisions.put(commit.getStreamId(), commit.getStreamRevision());
+				Assert.assertTrue(lastRevision == null || lastRevision < commit.getStreamRevision());
+				total++;
+			}
+		}
+		Assert.assertEquals(commits.size(), total);
+	}
+
+	@Test
+	public void idlePartitionBoundsTheRead() throws Exception {
+		ListPublisher source = new ListPublisher(commits(6, 20));
+		StreamPartitions split = new StreamPartitions(source, PARTITIONS, 8, executor);
+		AtomicInteger delivered = new AtomicInteger();
+		for (int partition = 0; partition < PARTITIONS; partition++) {
+			boolean idle = partition == 0;
+			split.getPartitions().get(partition).subscribe(new Subscriber<Commit>() {
+				@Override
+				public void onSubscribe(Subscription s) {
+					if(!idle){
+						s.request(Long.MAX_VALUE);
+					}
+				}
+
+				@Override
+				public void onNext(Commit commit) {
+					delivered.incrementAndGet();
+				}
+
+				@Override
+				public void onError(Throwable t) {
+				}
+
+				@Override
+				public void onComplete() {
+				}
+			});
+		}
+		long deadline = System.currentTimeMillis() + 5000;
+		while (source.emitted.get() < 8 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(200);
+		Assert.assertTrue(source.emitted.get() - delivered.get() <= 8);
+		Assert.assertTrue(source.emitted.get() < 120);
+	}
+
+	/**
+	 * Revisions 1 to n of each stream, interleaved in checkpoint order, with streams spread over every partition.
+	 */
+	private static List<Commit> commits(int streams, int revisions) {
+		List<String> streamIds = new ArrayList<>();
+		for (int id = 0; streamIds.size() < streams; id++) {
+			if(StreamPartitions.partitionOf(String.valueOf(id), PARTITIONS) == streamIds.size() % PARTITIONS){
+				streamIds.add(String.valueOf(id));
+			}
+		}
+		List<Commit> commits = new ArrayList<>();
+		long checkpoint = 0;
+		for (long revision = 1; revision <= revisions; revision++) {
+			for (String streamId : streamIds) {
+				checkpoint++;
+				commits.add(new BaseCommit(streamId, "Account", revision, UUID.randomUUID(), revision, System.currentTimeMillis(), String.valueOf(checkpoint), Collections.emptyMap(), Collections.emptyList()));
+			}
+		}
+		return commits;
+	}
+
+	/**
+	 * Emits a list on the thread requesting it, never more than requested.
+	 */
+	private static class ListPublisher implements Publisher<Commit> {
+
+		private final List<Commit> commits;
+		private final AtomicLong emitted = new AtomicLong();
+
+		ListPublisher(List<Commit> commits) {
+			this.commits = commits;
+		}
+
+		@Override
+		public void subscribe(Subscriber<? super Commit> subscriber) {
+			AtomicLong requested = new AtomicLong();
+			AtomicInteger wip = new AtomicInteger();
+			subscriber.onSubscribe(new Subscription() {
+				private int index;
+				private boolean cancelled;
+
+				@Override
+				public void request(long n) {
+					requested.addAndGet(n);
+					if(wip.getAndIncrement() != 0)
+						return;
+					int missed = 1;
+					do {
+						while (!cancelled && requested.get() > 0 && index < commits.size()) {
+							requested.decrementAndGet();
+							emitted.incrementAndGet();
+							subscriber.onNext(commits.get(index++));
+						}
+						if(!cancelled && index == commits.size()){
+							cancelled = true;
+							subscriber.onComplete();
+						}
+						missed = wip.addAndGet(-missed);
+					} while (missed != 0);
+				}
+
+				@Override
+				public void cancel() {
+					cancelled = true;
+				}
+			});
+		}
+	}
+}